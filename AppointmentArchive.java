@@ -0,0 +1,258 @@
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Appointments from past months, one file per month in appointments.d/
+ * (2025-09.txt, or 2025-09.bin in the binary snapshot format).
+ *
+ * The live index only holds the current month onward. A past month is
+ * read from disk the first time a query reaches it and kept in a small
+ * LRU of months, so startup time and heap follow the active window rather
+ * than the whole history. Cached months are packed as CompactAppointments
+ * (14 bytes a row), by default in direct buffers outside the Java heap, so
+ * years of history cost the garbage collector nothing; Appointment objects
+ * are only built for the rows a query returns. Cancelling an archived
+ * appointment rewrites its month file.
+ *
+ * Thread-safe; loading and writing months is serialized.
+ */
+public class AppointmentArchive {
+
+    private static final Comparator<Appointment> BY_DATE_TIME = Comparator
+            .comparing(Appointment::getDate)
+            .thenComparing(Appointment::getTime)
+            .thenComparingInt(Appointment::getId);
+
+    private final Path dir;
+    private final AppointmentJournal.SnapshotFormat format;
+    private final NavigableSet<YearMonth> months = new ConcurrentSkipListSet<>(); // on disk
+    private final IdInterner ids = new IdInterner();
+    private final boolean offHeap;
+
+    // access-ordered, so the eldest entry is the least recently used month
+    private final LinkedHashMap<YearMonth, CompactAppointments> cache;
+
+    public AppointmentArchive(String dir, AppointmentJournal.SnapshotFormat format, int cachedMonths,
+                              boolean offHeap) {
+        this.dir = Paths.get(dir);
+        this.format = format;
+        this.offHeap = offHeap;
+        this.cache = new LinkedHashMap<YearMonth, CompactAppointments>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<YearMonth, CompactAppointments> eldest) {
+                return size() > cachedMonths;
+            }
+        };
+
+        if (Files.isDirectory(this.dir)) {
+            try (Stream<Path> files = Files.list(this.dir)) {
+                files.forEach(f -> {
+                    YearMonth month = monthOf(f);
+                    if (month != null) {
+                        months.add(month);
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("Error listing " + dir + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // 2025-09.txt / 2025-09.bin -> 2025-09, anything else -> null
+    private static YearMonth monthOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.matches("\\d{4}-\\d{2}\\.(txt|bin)")) {
+            return null;
+        }
+        return YearMonth.parse(name.substring(0, 7));
+    }
+
+    private Path fileFor(YearMonth month, AppointmentJournal.SnapshotFormat f) {
+        return dir.resolve(month + (f == AppointmentJournal.SnapshotFormat.BINARY ? ".bin" : ".txt"));
+    }
+
+    private AppointmentJournal.SnapshotFormat otherFormat() {
+        return format == AppointmentJournal.SnapshotFormat.BINARY
+                ? AppointmentJournal.SnapshotFormat.TEXT : AppointmentJournal.SnapshotFormat.BINARY;
+    }
+
+    /** Number of months on disk. */
+    public int monthCount() {
+        return months.size();
+    }
+
+    /** Number of months held in the LRU. */
+    public synchronized int cachedMonthCount() {
+        return cache.size();
+    }
+
+    // ---------- Queries ----------
+
+    /** Archived appointments for a doctor between two dates (inclusive), sorted. */
+    public List<Appointment> forRange(String doctorId, LocalDate from, LocalDate to) {
+        List<Appointment> result = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return result;
+        }
+        for (YearMonth month : months.subSet(YearMonth.from(from), true, YearMonth.from(to), true)) {
+            month(month).forRange(doctorId, from, to, result);
+        }
+        return result;
+    }
+
+    /** Every archived appointment for a doctor, sorted. Reads every month. */
+    public List<Appointment> forDoctor(String doctorId) {
+        List<Appointment> result = new ArrayList<>();
+        for (YearMonth month : months) {
+            month(month).forDoctor(doctorId, result);
+        }
+        return result;
+    }
+
+    // One month, from the LRU or from disk
+    private synchronized CompactAppointments month(YearMonth month) {
+        CompactAppointments packed = cache.get(month);
+        if (packed == null) {
+            packed = CompactAppointments.of(read(month), offHeap);
+            cache.put(month, packed);
+        }
+        return packed;
+    }
+
+    /** Bytes of cached rows outside the Java heap (direct buffers). */
+    public synchronized long cachedOffHeapBytes() {
+        long total = 0;
+        for (CompactAppointments packed : cache.values()) {
+            total += packed.isOffHeap() ? packed.rowBytes() : 0;
+        }
+        return total;
+    }
+
+    /** Approximate heap held by the cached months. */
+    public synchronized long cachedHeapBytes() {
+        long total = 0;
+        for (CompactAppointments packed : cache.values()) {
+            total += packed.indexBytes() + (packed.isOffHeap() ? 0 : packed.rowBytes());
+        }
+        return total;
+    }
+
+    // A month file as written, sorted by date and time. For display: a
+    // failure is reported and gives what could be read.
+    private List<Appointment> read(YearMonth month) {
+        List<Appointment> result = new ArrayList<>();
+        try {
+            readAll(month, result);
+        } catch (IOException e) {
+            System.err.println("Error reading archived month " + month + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    // As above, but all or nothing: for rewriting a month, where a row that
+    // was not read would be lost
+    private List<Appointment> readStrict(YearMonth month) throws IOException {
+        List<Appointment> result = new ArrayList<>();
+        AppointmentFileLoader.Report report = readAll(month, result);
+        if (report.getRejected() > 0) {
+            throw new IOException(report.getRejected() + " unreadable rows in archived month " + month
+                    + ": " + report.getProblems());
+        }
+        return result;
+    }
+
+    private AppointmentFileLoader.Report readAll(YearMonth month, List<Appointment> into) throws IOException {
+        Path file = fileFor(month, format);
+        if (!Files.exists(file)) {
+            // written before the snapshot format was switched
+            file = fileFor(month, otherFormat());
+        }
+        return new AppointmentFileLoader(ids, d -> true).load(file, null, into::add);
+    }
+
+    // ---------- Writing ----------
+
+    /**
+     * Merges appointments into their month files. An id already archived
+     * is replaced, so adding the same appointments twice is harmless. If a
+     * month file cannot be read in full it is left as it is and this
+     * throws.
+     */
+    public synchronized void add(Collection<Appointment> appointments) throws IOException {
+        Map<YearMonth, List<Appointment>> byMonth = new TreeMap<>();
+        for (Appointment appt : appointments) {
+            byMonth.computeIfAbsent(YearMonth.from(appt.getDate()), m -> new ArrayList<>()).add(appt);
+        }
+        Files.createDirectories(dir);
+
+        for (Map.Entry<YearMonth, List<Appointment>> e : byMonth.entrySet()) {
+            YearMonth month = e.getKey();
+            Map<Integer, Appointment> merged = new HashMap<>();
+            if (months.contains(month)) {
+                for (Appointment appt : readStrict(month)) {
+                    merged.put(appt.getId(), appt);
+                }
+            }
+            for (Appointment appt : e.getValue()) {
+                merged.put(appt.getId(), appt);
+            }
+            List<Appointment> sorted = new ArrayList<>(merged.values());
+            sorted.sort(BY_DATE_TIME);
+
+            write(month, sorted);
+            months.add(month);
+            cache.remove(month);
+        }
+    }
+
+    /**
+     * Removes an archived appointment from its month file and returns it,
+     * or null if no month holds it. Months are searched newest first. If
+     * the month cannot be read in full it is left as it is and this throws.
+     */
+    public synchronized Appointment remove(int appointmentId) throws IOException {
+        for (YearMonth month : months.descendingSet()) {
+            Appointment appt = month(month).get(appointmentId);
+            if (appt == null) {
+                continue;
+            }
+            List<Appointment> rest = readStrict(month);
+            rest.removeIf(a -> a.getId() == appointmentId);
+            write(month, rest);
+            cache.remove(month);
+            return appt;
+        }
+        return null;
+    }
+
+    private void write(YearMonth month, List<Appointment> sorted) throws IOException {
+        Path file = fileFor(month, format);
+        Path tmp = Paths.get(file + ".tmp");
+        if (format == AppointmentJournal.SnapshotFormat.BINARY) {
+            AppointmentBinaryFile.write(tmp, sorted);
+        } else {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 Writer w = new BufferedWriter(new OutputStreamWriter(
+                         Channels.newOutputStream(out), StandardCharsets.UTF_8))) {
+                for (Appointment appt : sorted) {
+                    w.write(AppointmentJournal.formatAppointment(appt));
+                    w.write('\n');
+                }
+                w.flush();
+                out.force(true); // the snapshot is about to stop holding these
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the month now lives in the current format only
+        Files.deleteIfExists(fileFor(month, otherFormat()));
+    }
+}
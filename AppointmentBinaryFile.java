@@ -0,0 +1,253 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Binary, column-per-field snapshot of appointments (appointments.bin).
+ *
+ * Layout, big-endian:
+ *   int   magic "CFAP"
+ *   int   version (1)
+ *   int   rows
+ *   int   names                     (distinct doctor and patient ids)
+ *   names x { short length, UTF-8 bytes }
+ *   rows x int    id
+ *   rows x int    doctor ordinal     (index into names)
+ *   rows x int    patient ordinal
+ *   rows x int    epoch day
+ *   rows x short  minute of day
+ *
+ * Every row is 18 fixed bytes, so column i of row r sits at a computed
+ * offset and a mapped file can be read without parsing. open() maps the
+ * file and checks its size against the header; the accessors read straight
+ * from the mapping.
+ *
+ * Run as a program to convert between the formats:
+ *   java AppointmentBinaryFile to-binary appointments.txt appointments.bin
+ *   java AppointmentBinaryFile to-text appointments.bin appointments.txt
+ */
+public class AppointmentBinaryFile {
+
+    private static final int MAGIC = 0x43464150; // "CFAP"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+    private static final int ROW_BYTES = 4 + 4 + 4 + 4 + 2;
+
+    private final MappedByteBuffer buf;
+    private final String[] names;
+    private final int rows;
+    private final int idAt, doctorAt, patientAt, dayAt, minuteAt; // column offsets
+
+    private AppointmentBinaryFile(MappedByteBuffer buf, String[] names, int rows, int columnsAt) {
+        this.buf = buf;
+        this.names = names;
+        this.rows = rows;
+        this.idAt = columnsAt;
+        this.doctorAt = idAt + 4 * rows;
+        this.patientAt = doctorAt + 4 * rows;
+        this.dayAt = patientAt + 4 * rows;
+        this.minuteAt = dayAt + 4 * rows;
+    }
+
+    /** True if the file exists and starts with the binary format's magic number. */
+    public static boolean isBinary(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4);
+            return ch.read(head, 0) == 4 && head.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // ---------- Reading ----------
+
+    /** Maps a binary snapshot. Throws IOException if it is not one or is truncated. */
+    public static AppointmentBinaryFile open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to map (" + size + " bytes)");
+            }
+            if (size < HEADER) {
+                throw new IOException(file + " is not an appointment snapshot");
+            }
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buf.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not an appointment snapshot");
+            }
+            int version = buf.getInt(4);
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported version " + version);
+            }
+            int rows = buf.getInt(8);
+            int nameCount = buf.getInt(12);
+            if (rows < 0 || nameCount < 0) {
+                throw new IOException(file + " has a corrupt header");
+            }
+
+            String[] names = new String[nameCount];
+            int pos = HEADER;
+            byte[] scratch = new byte[64];
+            for (int i = 0; i < nameCount; i++) {
+                if (pos + 2 > size) {
+                    throw new IOException(file + " is truncated");
+                }
+                int len = buf.getShort(pos) & 0xFFFF;
+                pos += 2;
+                if (pos + len > size) {
+                    throw new IOException(file + " is truncated");
+                }
+                if (len > scratch.length) {
+                    scratch = new byte[len];
+                }
+                buf.get(pos, scratch, 0, len);
+                names[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+                pos += len;
+            }
+            if (pos + (long) rows * ROW_BYTES != size) {
+                throw new IOException(file + " is truncated or has trailing bytes");
+            }
+            return new AppointmentBinaryFile(buf, names, rows, pos);
+        }
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    /** Number of distinct ids in the name table. */
+    public int nameCount() {
+        return names.length;
+    }
+
+    public String name(int ordinal) {
+        return names[ordinal];
+    }
+
+    public int id(int row) {
+        return buf.getInt(idAt + 4 * row);
+    }
+
+    public int doctorOrdinal(int row) {
+        return buf.getInt(doctorAt + 4 * row);
+    }
+
+    public int patientOrdinal(int row) {
+        return buf.getInt(patientAt + 4 * row);
+    }
+
+    public int epochDay(int row) {
+        return buf.getInt(dayAt + 4 * row);
+    }
+
+    public int minuteOfDay(int row) {
+        return buf.getShort(minuteAt + 2 * row);
+    }
+
+    // ---------- Writing ----------
+
+    /** Writes appointments to file (replacing it) and forces it to disk. */
+    public static void write(Path file, Collection<Appointment> appointments) throws IOException {
+        // Materialize the columns first; the collection may be a live view
+        IdInterner interner = new IdInterner();
+        int n = appointments.size();
+        int[] ids = new int[n];
+        int[] doctors = new int[n];
+        int[] patients = new int[n];
+        int[] days = new int[n];
+        short[] minutes = new short[n];
+        int rows = 0;
+        for (Appointment appt : appointments) {
+            if (rows == ids.length) {
+                int grown = Math.max(16, rows * 2);
+                ids = Arrays.copyOf(ids, grown);
+                doctors = Arrays.copyOf(doctors, grown);
+                patients = Arrays.copyOf(patients, grown);
+                days = Arrays.copyOf(days, grown);
+                minutes = Arrays.copyOf(minutes, grown);
+            }
+            ids[rows] = appt.getId();
+            doctors[rows] = interner.ordinalOf(appt.getDoctorId());
+            patients[rows] = interner.ordinalOf(appt.getPatientId());
+            days[rows] = (int) appt.getDate().toEpochDay();
+            minutes[rows] = (short) (appt.getTime().getHour() * 60 + appt.getTime().getMinute());
+            rows++;
+        }
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(interner.size());
+            for (int i = 0; i < interner.size(); i++) {
+                byte[] name = interner.get(i).getBytes(StandardCharsets.UTF_8);
+                if (name.length > 0xFFFF) {
+                    throw new IOException("Id too long for the binary format: " + interner.get(i));
+                }
+                out.writeShort(name.length);
+                out.write(name);
+            }
+            writeInts(out, ids, rows);
+            writeInts(out, doctors, rows);
+            writeInts(out, patients, rows);
+            writeInts(out, days, rows);
+            for (int i = 0; i < rows; i++) {
+                out.writeShort(minutes[i]);
+            }
+            out.flush();
+            ch.force(true);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] column, int rows) throws IOException {
+        for (int i = 0; i < rows; i++) {
+            out.writeInt(column[i]);
+        }
+    }
+
+    // ---------- Converters ----------
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("to-binary") || args[0].equals("to-text"))) {
+            System.err.println("Usage: java AppointmentBinaryFile to-binary|to-text <from> <to>");
+            System.exit(2);
+        }
+        Path from = Paths.get(args[1]);
+        Path to = Paths.get(args[2]);
+
+        // The loader reads either format; rows are kept whatever the doctor
+        List<Appointment> appointments = new ArrayList<>();
+        AppointmentFileLoader.Report report = new AppointmentFileLoader(new IdInterner(), id -> true)
+                .load(from, null, appointments::add);
+        if (report.getRejected() > 0) {
+            System.err.println("Skipped " + report.getRejected() + " bad rows: " + report.getProblems());
+        }
+
+        if (args[0].equals("to-binary")) {
+            write(to, appointments);
+        } else {
+            try (Writer w = Files.newBufferedWriter(to, StandardCharsets.UTF_8)) {
+                for (Appointment appt : appointments) {
+                    w.write(AppointmentJournal.formatAppointment(appt));
+                    w.write('\n');
+                }
+            }
+        }
+        System.out.println("Wrote " + appointments.size() + " appointments to " + to
+                + " (" + Files.size(from) + " -> " + Files.size(to) + " bytes)");
+    }
+}
@@ -0,0 +1,351 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Streaming loader for appointments.txt (id;patientId;doctorId;date;time).
+ *
+ * The file is memory-mapped in large windows, copied out a block at a
+ * time and scanned byte by byte:
+ * numbers, dates (yyyy-MM-dd) and times (HH:mm) are parsed from fixed
+ * positions straight into ints, ids are interned from the bytes, and
+ * LocalDate/LocalTime instances are shared between rows. No String is
+ * built per line.
+ *
+ * A binary snapshot (see AppointmentBinaryFile) is recognised by its
+ * header and read column by column from the mapping instead.
+ *
+ * A bad row no longer aborts the load. It is skipped, appended to the
+ * quarantine file with its line number and reason (unless an earlier load
+ * already put it there), and counted in the returned Report.
+ */
+public class AppointmentFileLoader {
+
+    private static final long WINDOW = 256L * 1024 * 1024; // mapped at a time
+    private static final int BLOCK = 1024 * 1024;          // copied out and scanned at a time
+    private static final int MAX_REPORTED = 20;
+
+    /** What a load did. */
+    public static class Report {
+        private int loaded;
+        private int rejected;
+        private final List<String> problems = new ArrayList<>();
+
+        public int getLoaded() {
+            return loaded;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        /** The first few rejected rows, as "line N: reason". */
+        public List<String> getProblems() {
+            return problems;
+        }
+
+        @Override
+        public String toString() {
+            return loaded + " loaded, " + rejected + " rejected";
+        }
+    }
+
+    private final IdInterner ids;
+    private final Predicate<String> knownDoctor;
+    private final int[] semi = new int[4]; // field separators of the current line
+
+    private final DateTimeCache cache = new DateTimeCache();
+
+    /**
+     * @param ids         where doctor and patient ids are interned
+     * @param knownDoctor rows whose doctor fails this test are rejected
+     */
+    public AppointmentFileLoader(IdInterner ids, Predicate<String> knownDoctor) {
+        this.ids = ids;
+        this.knownDoctor = knownDoctor;
+    }
+
+    public Report load(Path file, Path quarantineFile, Consumer<Appointment> sink) throws IOException {
+        Report report = new Report();
+        if (!Files.exists(file)) {
+            return report;
+        }
+        if (AppointmentBinaryFile.isBinary(file)) {
+            loadBinary(file, quarantineFile, sink, report);
+            return report;
+        }
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+             Quarantine quarantine = new Quarantine(file, quarantineFile)) {
+            long size = ch.size();
+            byte[] block = new byte[BLOCK];
+            int carry = 0; // bytes of an unfinished line at the front of block
+            int lineNo = 0;
+            for (long base = 0; base < size; base += WINDOW) {
+                MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, base, Math.min(WINDOW, size - base));
+                while (window.hasRemaining()) {
+                    int n = Math.min(block.length - carry, window.remaining());
+                    window.get(block, carry, n);
+                    int limit = carry + n;
+                    int start = 0;
+                    for (int pos = 0; pos < limit; pos++) {
+                        if (block[pos] == '\n') {
+                            lineNo++;
+                            parseLine(block, start, pos, lineNo, sink, report, quarantine);
+                            start = pos + 1;
+                        }
+                    }
+                    carry = limit - start;
+                    if (carry == block.length) {
+                        throw new IOException("Line longer than " + BLOCK + " bytes in " + file);
+                    }
+                    System.arraycopy(block, start, block, 0, carry);
+                }
+            }
+            if (carry > 0) {
+                lineNo++;
+                parseLine(block, 0, carry, lineNo, sink, report, quarantine);
+            }
+        }
+        return report;
+    }
+
+    // Rows of a binary snapshot need no parsing, only range checks
+    private void loadBinary(Path file, Path quarantineFile, Consumer<Appointment> sink,
+                            Report report) throws IOException {
+        AppointmentBinaryFile bin = AppointmentBinaryFile.open(file);
+        // file ordinals -> interned ids, doctors checked once each
+        String[] names = new String[bin.nameCount()];
+        boolean[] known = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = ids.intern(bin.name(i));
+            known[i] = knownDoctor.test(names[i]);
+        }
+        try (Quarantine quarantine = new Quarantine(file, quarantineFile)) {
+            for (int row = 0; row < bin.size(); row++) {
+                int id = bin.id(row);
+                int doctor = bin.doctorOrdinal(row);
+                int patient = bin.patientOrdinal(row);
+                int minute = bin.minuteOfDay(row);
+                String reason = null;
+                if (id < 0) {
+                    reason = "bad id";
+                } else if (doctor < 0 || doctor >= names.length || patient < 0 || patient >= names.length) {
+                    reason = "missing patient or doctor";
+                } else if (minute < 0 || minute >= 24 * 60) {
+                    reason = "bad time";
+                } else if (!known[doctor]) {
+                    reason = "unknown doctor " + names[doctor];
+                }
+
+                if (reason == null) {
+                    sink.accept(new Appointment(id, names[doctor], cache.date(bin.epochDay(row)),
+                            cache.time(minute), names[patient]));
+                    report.loaded++;
+                } else {
+                    report.rejected++;
+                    if (report.problems.size() < MAX_REPORTED) {
+                        report.problems.add("row " + (row + 1) + ": " + reason);
+                    }
+                    String raw = id + ";" + patient + ";" + doctor + ";" + bin.epochDay(row) + ";" + minute;
+                    if (reason.startsWith("unknown doctor")) {
+                        raw = id + ";" + names[patient] + ";" + names[doctor] + ";"
+                                + cache.date(bin.epochDay(row)) + ";" + cache.time(minute);
+                    }
+                    byte[] bytes = raw.getBytes(StandardCharsets.UTF_8);
+                    quarantine.write(row + 1, reason, bytes, 0, bytes.length);
+                }
+            }
+        }
+    }
+
+    private void parseLine(byte[] buf, int from, int to, int lineNo,
+                           Consumer<Appointment> sink, Report report, Quarantine quarantine) throws IOException {
+        if (to > from && buf[to - 1] == '\r') {
+            to--;
+        }
+        if (to == from) {
+            return; // blank line
+        }
+
+        // field boundaries: id ; patient ; doctor ; date ; time
+        int found = 0;
+        for (int p = from; p < to && found < 4; p++) {
+            if (buf[p] == ';') {
+                semi[found++] = p;
+            }
+        }
+        String reason = null;
+        Appointment appt = null;
+        if (found < 4) {
+            reason = "expected 5 fields";
+        } else {
+            int id = parseInt(buf, from, semi[0]);
+            LocalDate date = parseDate(buf, semi[2] + 1, semi[3]);
+            LocalTime time = parseTime(buf, semi[3] + 1, to);
+            if (id < 0) {
+                reason = "bad id";
+            } else if (date == null) {
+                reason = "bad date";
+            } else if (time == null) {
+                reason = "bad time";
+            } else if (semi[0] + 1 == semi[1] || semi[1] + 1 == semi[2]) {
+                reason = "missing patient or doctor";
+            } else {
+                String patientId = ids.intern(buf, semi[0] + 1, semi[1]);
+                String doctorId = ids.intern(buf, semi[1] + 1, semi[2]);
+                if (!knownDoctor.test(doctorId)) {
+                    reason = "unknown doctor " + doctorId;
+                } else {
+                    appt = new Appointment(id, doctorId, date, time, patientId);
+                }
+            }
+        }
+
+        if (appt != null) {
+            sink.accept(appt);
+            report.loaded++;
+        } else {
+            report.rejected++;
+            if (report.problems.size() < MAX_REPORTED) {
+                report.problems.add("line " + lineNo + ": " + reason);
+            }
+            quarantine.write(lineNo, reason, buf, from, to);
+        }
+    }
+
+    // Non-negative decimal int, or -1
+    private static int parseInt(byte[] buf, int from, int to) {
+        if (from == to || to - from > 9) {
+            return -1;
+        }
+        int n = 0;
+        for (int p = from; p < to; p++) {
+            int d = buf[p] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            n = n * 10 + d;
+        }
+        return n;
+    }
+
+    // yyyy-MM-dd, or null
+    private LocalDate parseDate(byte[] buf, int from, int to) {
+        if (to - from != 10 || buf[from + 4] != '-' || buf[from + 7] != '-') {
+            return null;
+        }
+        int y = parseInt(buf, from, from + 4);
+        int m = parseInt(buf, from + 5, from + 7);
+        int d = parseInt(buf, from + 8, from + 10);
+        if (y < 0 || m < 1 || m > 12 || d < 1 || d > monthLength(y, m)) {
+            return null;
+        }
+        return cache.date(epochDay(y, m, d));
+    }
+
+    private static boolean isLeap(int y) {
+        return (y & 3) == 0 && (y % 100 != 0 || y % 400 == 0);
+    }
+
+    private static int monthLength(int y, int m) {
+        switch (m) {
+            case 2:
+                return isLeap(y) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Same arithmetic as LocalDate.toEpochDay, for a year >= 0
+    private static long epochDay(int y, int m, int d) {
+        long total = 365L * y + (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        total += (367 * m - 362) / 12;
+        total += d - 1;
+        if (m > 2) {
+            total--;
+            if (!isLeap(y)) {
+                total--;
+            }
+        }
+        return total - 719528; // days from 0000-01-01 to 1970-01-01
+    }
+
+    // HH:mm, or null
+    private LocalTime parseTime(byte[] buf, int from, int to) {
+        if (to - from != 5 || buf[from + 2] != ':') {
+            return null;
+        }
+        int h = parseInt(buf, from, from + 2);
+        int m = parseInt(buf, from + 3, from + 5);
+        if (h < 0 || h > 23 || m < 0 || m > 59) {
+            return null;
+        }
+        return cache.time(h * 60 + m);
+    }
+
+    // Bad rows go here, opened only if there are any. A row already in the
+    // file from an earlier load is not added again.
+    private static class Quarantine implements Closeable {
+        private final Path source;
+        private final Path file;
+        private Set<String> known; // rows already in the file
+        private Writer out;
+
+        Quarantine(Path source, Path file) {
+            this.source = source;
+            this.file = file;
+        }
+
+        void write(int lineNo, String reason, byte[] buf, int from, int to) throws IOException {
+            if (file == null) {
+                return;
+            }
+            String row = new String(buf, from, to - from, StandardCharsets.UTF_8);
+            if (known == null) {
+                known = new HashSet<>();
+                if (Files.exists(file)) {
+                    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                        if (!line.startsWith("#")) {
+                            known.add(line);
+                        }
+                    }
+                }
+            }
+            if (!known.add(row)) {
+                return;
+            }
+            if (out == null) {
+                out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                out.write("# " + LocalDateTime.now() + " rejected from " + source + "\n");
+            }
+            out.write("# line " + lineNo + ": " + reason + "\n");
+            out.write(row);
+            out.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+}
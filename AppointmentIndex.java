@@ -0,0 +1,263 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory appointment store indexed by doctor, date and time, plus by id.
+ *
+ * Day lookups, date ranges and slot conflict checks are O(log n) tree
+ * lookups instead of scans, and results come out already in date/time
+ * order.
+ *
+ * Thread-safe. Writes for a doctor go through that doctor's lock stripe,
+ * so check-and-insert on a slot is atomic while bookings for other doctors
+ * run in parallel. Reads never lock; they walk concurrent skip lists and
+ * see each doctor-day as of some point during the call.
+ */
+public class AppointmentIndex {
+
+    private static final int STRIPES = 64; // power of two
+
+    private final ConcurrentMap<String, ConcurrentNavigableMap<LocalDate, ConcurrentNavigableMap<LocalTime, Appointment>>> byDoctor =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Appointment> byId = new ConcurrentHashMap<>();
+    private final Lock[] stripes = new Lock[STRIPES];
+    private final AvailabilityIndex availability = new AvailabilityIndex();
+
+    public AppointmentIndex() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * The lock guarding every write for this doctor. Callers hold it to
+     * make a check-then-act sequence (e.g. conflict check, insert, journal)
+     * atomic; the index's own writes take it too (it is reentrant).
+     */
+    public Lock lockFor(String doctorId) {
+        return stripes[stripeOf(doctorId)];
+    }
+
+    private static int stripeOf(String doctorId) {
+        int h = doctorId.hashCode();
+        h ^= (h >>> 16);
+        return h & (STRIPES - 1);
+    }
+
+    /**
+     * The distinct locks for a set of doctors, in a fixed global order.
+     * Taking them in this order lets batch writers span several doctors
+     * without deadlocking each other.
+     */
+    public List<Lock> locksFor(Collection<String> doctorIds) {
+        SortedMap<Integer, Lock> result = new TreeMap<>();
+        for (String id : doctorIds) {
+            int stripe = stripeOf(id);
+            result.put(stripe, stripes[stripe]);
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /** Slot bitmaps kept in step with every add and remove. */
+    public AvailabilityIndex availability() {
+        return availability;
+    }
+
+    public Appointment get(int appointmentId) {
+        return byId.get(appointmentId);
+    }
+
+    /** All appointments (weakly consistent while writers are active). */
+    public Collection<Appointment> all() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    public boolean isBooked(String doctorId, LocalDate date, LocalTime time) {
+        NavigableMap<LocalTime, Appointment> day = dayMap(doctorId, date);
+        return day != null && day.containsKey(time);
+    }
+
+    /**
+     * Adds an appointment. Returns false (and leaves the slot alone) if the
+     * doctor already has an appointment at that date and time.
+     */
+    public boolean add(Appointment appt) {
+        Lock lock = lockFor(appt.getDoctorId());
+        lock.lock();
+        try {
+            NavigableMap<LocalTime, Appointment> day = byDoctor
+                    .computeIfAbsent(appt.getDoctorId(), k -> new ConcurrentSkipListMap<>())
+                    .computeIfAbsent(appt.getDate(), k -> new ConcurrentSkipListMap<>());
+            Appointment existing = day.get(appt.getTime());
+            if (existing != null && existing.getId() != appt.getId()) {
+                return false;
+            }
+            Appointment previous = byId.put(appt.getId(), appt);
+            if (previous != null && previous != existing) {
+                unlinkSlot(previous);
+            }
+            day.put(appt.getTime(), appt);
+            availability.markBooked(appt.getDoctorId(), appt.getDate(), appt.getTime());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Removes an appointment by id, returning it, or null if unknown. */
+    public Appointment remove(int appointmentId) {
+        Appointment appt = byId.get(appointmentId);
+        if (appt == null) {
+            return null;
+        }
+        Lock lock = lockFor(appt.getDoctorId());
+        lock.lock();
+        try {
+            if (!byId.remove(appointmentId, appt)) {
+                return null; // someone else got there first
+            }
+            unlinkSlot(appt);
+            return appt;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the doctor's stripe, so pruning empty maps cannot race
+    // with an insert into them.
+    private void unlinkSlot(Appointment appt) {
+        NavigableMap<LocalDate, ConcurrentNavigableMap<LocalTime, Appointment>> dates = byDoctor.get(appt.getDoctorId());
+        if (dates == null) {
+            return;
+        }
+        NavigableMap<LocalTime, Appointment> day = dates.get(appt.getDate());
+        if (day == null) {
+            return;
+        }
+        // only drop the slot if it still points at this appointment
+        if (day.remove(appt.getTime(), appt)) {
+            availability.markFree(appt.getDoctorId(), appt.getDate(), day.keySet());
+        }
+        if (day.isEmpty()) {
+            dates.remove(appt.getDate());
+        }
+        if (dates.isEmpty()) {
+            byDoctor.remove(appt.getDoctorId());
+        }
+    }
+
+    /** Removes and returns every appointment dated before cutoff. */
+    public List<Appointment> removeBefore(LocalDate cutoff) {
+        List<Appointment> removed = new ArrayList<>();
+        for (String doctorId : new ArrayList<>(byDoctor.keySet())) {
+            Lock lock = lockFor(doctorId);
+            lock.lock();
+            try {
+                NavigableMap<LocalDate, ConcurrentNavigableMap<LocalTime, Appointment>> dates = byDoctor.get(doctorId);
+                if (dates == null) {
+                    continue;
+                }
+                for (Appointment appt : flatten(dates.headMap(cutoff))) {
+                    if (remove(appt.getId()) != null) {
+                        removed.add(appt);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Gives a doctor a new schedule template, rebuilding availability only
+     * for booked days whose slot grid changes. Unless keepFrom is null, the
+     * template is not applied if it would cut short an appointment on or
+     * after keepFrom (see AvailabilityIndex.wouldCutShort); those
+     * appointments are returned instead. Empty once applied.
+     */
+    public List<Appointment> setTemplate(String doctorId, ScheduleTemplate template, LocalDate keepFrom) {
+        Lock lock = lockFor(doctorId);
+        lock.lock();
+        try {
+            List<Appointment> cutShort = new ArrayList<>();
+            Map<LocalDate, Set<LocalTime>> bookedDays = new HashMap<>();
+            NavigableMap<LocalDate, ConcurrentNavigableMap<LocalTime, Appointment>> dates = byDoctor.get(doctorId);
+            if (dates != null) {
+                for (Map.Entry<LocalDate, ConcurrentNavigableMap<LocalTime, Appointment>> e : dates.entrySet()) {
+                    LocalDate date = e.getKey();
+                    bookedDays.put(date, e.getValue().keySet());
+                    if (keepFrom == null || date.isBefore(keepFrom)) {
+                        continue;
+                    }
+                    SlotGrid old = availability.gridFor(doctorId, date);
+                    SlotGrid now = template.gridFor(date);
+                    for (Appointment appt : e.getValue().values()) {
+                        if (!old.equals(now) && AvailabilityIndex.wouldCutShort(old, now, appt.getTime())) {
+                            cutShort.add(appt);
+                        }
+                    }
+                }
+            }
+            if (cutShort.isEmpty()) {
+                availability.setTemplate(doctorId, template, bookedDays);
+            }
+            return cutShort;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Read-only view of one doctor-day, keyed by time. Empty if none. */
+    public NavigableMap<LocalTime, Appointment> day(String doctorId, LocalDate date) {
+        NavigableMap<LocalTime, Appointment> day = dayMap(doctorId, date);
+        return day == null ? Collections.emptyNavigableMap() : Collections.unmodifiableNavigableMap(day);
+    }
+
+    /** Appointments for one doctor-day, sorted by time. */
+    public List<Appointment> forDay(String doctorId, LocalDate date) {
+        return new ArrayList<>(day(doctorId, date).values());
+    }
+
+    /** Appointments for a doctor between two dates (inclusive), sorted. */
+    public List<Appointment> forRange(String doctorId, LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, ConcurrentNavigableMap<LocalTime, Appointment>> dates = byDoctor.get(doctorId);
+        if (dates == null || from.isAfter(to)) {
+            return new ArrayList<>();
+        }
+        return flatten(dates.subMap(from, true, to, true));
+    }
+
+    /** Every appointment for a doctor, sorted by date then time. */
+    public List<Appointment> forDoctor(String doctorId) {
+        NavigableMap<LocalDate, ConcurrentNavigableMap<LocalTime, Appointment>> dates = byDoctor.get(doctorId);
+        if (dates == null) {
+            return new ArrayList<>();
+        }
+        return flatten(dates);
+    }
+
+    private NavigableMap<LocalTime, Appointment> dayMap(String doctorId, LocalDate date) {
+        NavigableMap<LocalDate, ConcurrentNavigableMap<LocalTime, Appointment>> dates = byDoctor.get(doctorId);
+        return dates == null ? null : dates.get(date);
+    }
+
+    private static List<Appointment> flatten(Map<LocalDate, ConcurrentNavigableMap<LocalTime, Appointment>> dates) {
+        List<Appointment> result = new ArrayList<>();
+        for (NavigableMap<LocalTime, Appointment> day : dates.values()) {
+            result.addAll(day.values());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,523 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Append-only journal of appointment bookings and cancellations.
+ *
+ * Every change is one small line appended to appointments.log:
+ *   B;id;patientId;doctorId;date;time   (booked)
+ *   C;id                                (cancelled)
+ *   T;n                                 (the next n B lines are one batch)
+ *
+ * On startup the snapshot (appointments.txt, or appointments.bin in the
+ * binary format) is loaded and the journal is replayed on top of it. Once enough records have piled up, the journal is
+ * rotated and the snapshot is rewritten on a background thread.
+ */
+public class AppointmentJournal {
+
+    /** When appended records are forced to disk. */
+    public enum FsyncPolicy {
+        PER_WRITE,      // force after every record
+        GROUP_COMMIT,   // concurrent writers share one force
+        PERIODIC        // force on a timer, writes return immediately
+    }
+
+    /** How compaction writes the snapshot. */
+    public enum SnapshotFormat {
+        TEXT,           // id;patientId;doctorId;date;time lines
+        BINARY          // AppointmentBinaryFile
+    }
+
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final Path logFile;
+    private final Path compactingFile;
+    private final Path snapshotFile;
+    private final FsyncPolicy policy;
+    private final SnapshotFormat format;
+    private final int compactThreshold;
+
+    private FileChannel channel;
+    private int recordsSinceCompaction;
+
+    // group commit bookkeeping, guarded by forceLock
+    private final Object forceLock = new Object();
+    private long writtenSeq;
+    private long forcedSeq;
+    private boolean forcing;
+
+    private final ExecutorService flusher;
+    private final ExecutorService compactor;
+    private final ScheduledExecutorService syncer;
+    private volatile boolean compacting;
+
+    public AppointmentJournal(String snapshotFile, String logFile, FsyncPolicy policy,
+                              SnapshotFormat format, int compactThreshold) {
+        this.snapshotFile = Paths.get(snapshotFile);
+        this.logFile = Paths.get(logFile);
+        this.compactingFile = Paths.get(logFile + ".compacting");
+        this.policy = policy;
+        this.format = format;
+        this.compactThreshold = compactThreshold;
+
+        this.flusher = Executors.newSingleThreadExecutor(r -> daemon(r, "journal-flusher"));
+        this.compactor = Executors.newSingleThreadExecutor(r -> daemon(r, "journal-compactor"));
+        if (policy == FsyncPolicy.PERIODIC) {
+            long intervalMs = Long.getLong("clinicflow.journal.fsyncIntervalMs", 1000L);
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "journal-sync"));
+            syncer.scheduleAtFixedRate(this::forceQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Builds a journal configured from system properties:
+     * clinicflow.journal.fsync (PER_WRITE, GROUP_COMMIT, PERIODIC) and
+     * clinicflow.journal.compactEvery (records between compactions).
+     */
+    public static AppointmentJournal fromSystemProperties(String snapshotFile, String logFile,
+                                                          SnapshotFormat format) {
+        FsyncPolicy policy;
+        try {
+            policy = FsyncPolicy.valueOf(
+                    System.getProperty("clinicflow.journal.fsync", "GROUP_COMMIT").trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown fsync policy, using GROUP_COMMIT: " + e.getMessage());
+            policy = FsyncPolicy.GROUP_COMMIT;
+        }
+        int threshold = Integer.getInteger("clinicflow.journal.compactEvery", 10000);
+        return new AppointmentJournal(snapshotFile, logFile, policy, format, threshold);
+    }
+
+    // ---------- Record format ----------
+
+    /** Snapshot line: id;patientId;doctorId;date;time */
+    public static String formatAppointment(Appointment appt) {
+        return appt.getId() + ";" + appt.getPatientId() + ";" + appt.getDoctorId() + ";"
+                + appt.getDate().format(DATE_FMT) + ";" + appt.getTime().format(TIME_FMT);
+    }
+
+    /** Parses a snapshot line, or returns null if it is not one. */
+    public static Appointment parseAppointment(String line) {
+        String[] parts = line.split(";", 5);
+        if (parts.length != 5) {
+            return null;
+        }
+        int id = Integer.parseInt(parts[0]);
+        LocalDate date = LocalDate.parse(parts[3], DATE_FMT);
+        LocalTime time = LocalTime.parse(parts[4], TIME_FMT);
+        return new Appointment(id, parts[2], date, time, parts[1]);
+    }
+
+    // ---------- Writing ----------
+
+    /**
+     * Appends a booking record and returns its sequence number. The record
+     * is written but not necessarily durable until sync(seq) returns, so a
+     * caller can append while holding a lock and sync after releasing it.
+     */
+    public long logBooked(Appointment appt) {
+        return append("B;" + formatAppointment(appt) + "\n");
+    }
+
+    /**
+     * Appends a whole batch of bookings in one write. On replay the batch
+     * is applied only if all of its records made it to disk.
+     */
+    public long logBookedAll(List<Appointment> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        StringBuilder sb = new StringBuilder(batch.size() * 40);
+        sb.append("T;").append(batch.size()).append('\n');
+        for (Appointment appt : batch) {
+            sb.append("B;").append(formatAppointment(appt)).append('\n');
+        }
+        return append(sb.toString(), batch.size());
+    }
+
+    public long logCancelled(int appointmentId) {
+        return append("C;" + appointmentId + "\n");
+    }
+
+    /**
+     * Makes record seq durable according to the fsync policy. Returns
+     * false if the record was not written or could not be forced.
+     */
+    public boolean sync(long seq) {
+        if (seq <= 0) {
+            return false; // the append failed, nothing to wait for
+        }
+        if (policy == FsyncPolicy.PER_WRITE) {
+            return forceQuietly();
+        } else if (policy == FsyncPolicy.GROUP_COMMIT) {
+            return awaitDurable(seq);
+        }
+        return true; // PERIODIC: the timer forces it
+    }
+
+    /**
+     * Like sync(seq), but on the journal's flusher thread, so the caller
+     * never waits on the disk. Requests that queue up while a force is
+     * running are covered by it, so a burst of changes costs one or two
+     * forces. The future completes with sync's result.
+     */
+    public CompletableFuture<Boolean> syncAsync(long seq) {
+        if (seq <= 0) {
+            return CompletableFuture.completedFuture(false);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> sync(seq), flusher);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(sync(seq)); // closing
+        }
+    }
+
+    /** Forces every record written so far, whatever the fsync policy. */
+    public boolean flush() {
+        long seq;
+        synchronized (forceLock) {
+            seq = writtenSeq;
+        }
+        return seq == 0 || awaitDurable(seq);
+    }
+
+    private long append(String record) {
+        return append(record, 1);
+    }
+
+    private long append(String record, int recordCount) {
+        long seq;
+        try {
+            synchronized (this) {
+                if (channel == null) {
+                    channel = openLog();
+                }
+                ByteBuffer buf = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+                recordsSinceCompaction += recordCount;
+                synchronized (forceLock) {
+                    seq = ++writtenSeq;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing appointment journal: " + e.getMessage());
+            return 0;
+        }
+        return seq;
+    }
+
+    /**
+     * Waits until record seq is on disk. The first waiter forces the channel
+     * for everyone written so far; the rest ride along on that force.
+     */
+    private boolean awaitDurable(long seq) {
+        long target;
+        synchronized (forceLock) {
+            while (forcing && forcedSeq < seq) {
+                try {
+                    forceLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (forcedSeq >= seq) {
+                return true;
+            }
+            forcing = true;
+            target = writtenSeq;
+        }
+
+        // writers keep appending while the disk syncs
+        boolean ok = forceQuietly();
+
+        synchronized (forceLock) {
+            forcing = false;
+            if (ok) {
+                forcedSeq = Math.max(forcedSeq, target);
+            }
+            forceLock.notifyAll();
+        }
+        return ok;
+    }
+
+    private boolean forceQuietly() {
+        FileChannel ch;
+        synchronized (this) {
+            ch = channel;
+        }
+        if (ch == null) {
+            return true;
+        }
+        try {
+            ch.force(false);
+            return true;
+        } catch (ClosedChannelException e) {
+            // rotated underneath us; rotation forces before closing
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error syncing appointment journal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // replay has already cut off any torn record at the end
+    private FileChannel openLog() throws IOException {
+        return FileChannel.open(logFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // ---------- Replay ----------
+
+    /**
+     * Replays a segment left behind by an unfinished compaction, then the
+     * live journal. Replay is idempotent: bookings are keyed by id and a
+     * cancel of an unknown id is ignored. A record or batch torn by a crash
+     * at the end of the live journal is cut off, so new records start on a
+     * line of their own and never complete an old batch.
+     */
+    public void replay(Consumer<Appointment> onBooked, IntConsumer onCancelled) {
+        replayFile(compactingFile, onBooked, onCancelled, false);
+        recordsSinceCompaction = replayFile(logFile, onBooked, onCancelled, true);
+    }
+
+    private int replayFile(Path file, Consumer<Appointment> onBooked, IntConsumer onCancelled,
+                           boolean trimTail) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        int count = 0;
+        List<Appointment> batch = null;
+        int batchSize = 0;
+        long read = 0;      // bytes read so far
+        long wholeEnd = 0;  // end of the last whole record or batch
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            ByteArrayOutputStream lineBytes = new ByteArrayOutputStream(64);
+            int b;
+            while ((b = in.read()) != -1) {
+                read++;
+                if (b != '\n') {
+                    lineBytes.write(b);
+                    continue;
+                }
+                String line = lineBytes.toString(StandardCharsets.UTF_8);
+                lineBytes.reset();
+                try {
+                    boolean batched = false;
+                    if (batch != null) {
+                        // inside a T block: collect, apply once complete
+                        Appointment appt = line.startsWith("B;") ? parseAppointment(line.substring(2)) : null;
+                        if (appt != null) {
+                            batch.add(appt);
+                            batched = true;
+                            if (batch.size() == batchSize) {
+                                batch.forEach(onBooked);
+                                count += batchSize;
+                                batch = null;
+                            }
+                        } else {
+                            // cut short by a crash; this line is the next record
+                            System.err.println("Dropping incomplete journal batch in " + file);
+                            batch = null;
+                        }
+                    }
+                    if (batched) {
+                        // taken by the batch
+                    } else if (line.startsWith("T;")) {
+                        batchSize = Integer.parseInt(line.substring(2).trim());
+                        batch = batchSize > 0 ? new ArrayList<>(batchSize) : null;
+                    } else if (line.startsWith("B;")) {
+                        Appointment appt = parseAppointment(line.substring(2));
+                        if (appt != null) {
+                            onBooked.accept(appt);
+                            count++;
+                        }
+                    } else if (line.startsWith("C;")) {
+                        onCancelled.accept(Integer.parseInt(line.substring(2).trim()));
+                        count++;
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping bad journal record in " + file + ": " + line);
+                    batch = null;
+                }
+                if (batch == null) {
+                    wholeEnd = read;
+                }
+            }
+            if (batch != null) {
+                System.err.println("Dropping incomplete journal batch in " + file);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading appointment journal: " + e.getMessage());
+            return count;
+        }
+        if (trimTail && read > wholeEnd) {
+            // a torn last line or an unfinished batch after a crash; records
+            // appended after it would be glued to the line or fill the batch
+            System.err.println("Cutting off a torn record at the end of " + file);
+            truncate(file, wholeEnd);
+        }
+        return count;
+    }
+
+    private static void truncate(Path file, long size) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(size);
+            ch.force(false);
+        } catch (IOException e) {
+            System.err.println("Error trimming appointment journal: " + e.getMessage());
+        }
+    }
+
+    // ---------- Compaction ----------
+
+    public synchronized boolean needsCompaction() {
+        return recordsSinceCompaction >= compactThreshold && !compacting;
+    }
+
+    /**
+     * Rotates the journal and rewrites the snapshot in the background from
+     * the live appointments. Every record in the rotated segment is already
+     * applied in memory, so the snapshot covers it; if the snapshot also
+     * picks up some later changes, replaying the fresh log on top of it
+     * still ends in the right state because replay is keyed by id.
+     */
+    public void compactAsync(Supplier<? extends Collection<Appointment>> snapshot) {
+        synchronized (this) {
+            if (compacting || Files.exists(compactingFile)) {
+                return;
+            }
+            try {
+                if (channel != null) {
+                    channel.force(false);
+                    channel.close();
+                    channel = null;
+                }
+                if (Files.exists(logFile)) {
+                    Files.move(logFile, compactingFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not rotate appointment journal: " + e.getMessage());
+                return;
+            }
+            recordsSinceCompaction = 0;
+            compacting = true;
+        }
+
+        compactor.submit(() -> {
+            try {
+                writeSnapshot(snapshot.get());
+                Files.deleteIfExists(compactingFile);
+            } catch (IOException e) {
+                System.err.println("Error compacting appointment journal: " + e.getMessage());
+            } finally {
+                compacting = false;
+            }
+        });
+    }
+
+    /** True if a compaction was cut short and its rotated segment is still on disk. */
+    public synchronized boolean hasUnfinishedCompaction() {
+        return !compacting && Files.exists(compactingFile);
+    }
+
+    /**
+     * Finishes a compaction cut short by a crash: writes the snapshot from
+     * the replayed state, which covers the rotated segment, then removes the
+     * segment so later compactions can run. Call after replay.
+     */
+    public synchronized boolean finishCompaction(Collection<Appointment> snapshot) {
+        if (compacting || !Files.exists(compactingFile)) {
+            return true;
+        }
+        try {
+            writeSnapshot(snapshot);
+            Files.deleteIfExists(compactingFile);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error finishing appointment journal compaction: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Writes the snapshot to a temp file and swaps it in atomically. */
+    public void writeSnapshot(Collection<Appointment> snapshot) throws IOException {
+        Path tmp = Paths.get(snapshotFile + ".tmp");
+        if (format == SnapshotFormat.BINARY) {
+            AppointmentBinaryFile.write(tmp, snapshot);
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        }
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Writer w = new BufferedWriter(new OutputStreamWriter(
+                     Channels.newOutputStream(out), StandardCharsets.UTF_8))) {
+            for (Appointment appt : snapshot) {
+                w.write(formatAppointment(appt));
+                w.write('\n');
+            }
+            w.flush();
+            out.force(true);
+        }
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---------- Shutdown ----------
+
+    /** Finishes queued syncs, forces outstanding records and waits for a running compaction. */
+    public void close() {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        flusher.shutdown();
+        compactor.shutdown();
+        try {
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (channel != null) {
+                try {
+                    channel.force(false);
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing appointment journal: " + e.getMessage());
+                }
+                channel = null;
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
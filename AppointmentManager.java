@@ -1,30 +1,204 @@
 import java.io.*;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 public class AppointmentManager {
 
-    private List<Appointment> appointments = new ArrayList<>();
-    private List<Patient> patients = new ArrayList<>();
-    private List<Doctor> doctors = new ArrayList<>();
+    private AppointmentIndex appointments = new AppointmentIndex();
+    private IdRegistry<Patient> patients = new IdRegistry<>(Patient::getId);
+    private PatientSearchIndex patientIndex = new PatientSearchIndex();
+    private IdRegistry<Doctor> doctors = new IdRegistry<>(Doctor::getId);
+    // true once doctors.txt was read in full; until then no appointment is
+    // dropped for naming an unknown doctor
+    private boolean doctorsLoaded;
+    private Map<String, ScheduleTemplate> schedules = new LinkedHashMap<>();
     private Map<String, String> staffCredentials = new HashMap<>();
 
-    private final String STAFF_FILE = "staff.txt";
-    private final String PATIENT_FILE = "patients.txt";
-    private final String DOCTOR_FILE = "doctors.txt";
-    private final String APPOINTMENT_FILE = "appointments.txt";
+    private final String STAFF_FILE;
+    private final String PATIENT_FILE;
+    private final String DOCTOR_FILE;
+    private final String SCHEDULE_FILE;
+    private final String APPOINTMENT_FILE;
+    private final String APPOINTMENT_TEXT_FILE;
+    private final String APPOINTMENT_LOG_FILE;
+    private final String APPOINTMENT_REJECT_FILE;
+    private final String ARCHIVE_DIR;
+    private final String ID_FILE;
 
-    private final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-    private final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm");
+    private final AppointmentJournal journal;
+    private final AppointmentArchive archive;
+    // first day held in memory; earlier months live in the archive
+    private final LocalDate activeFrom = YearMonth.now().atDay(1);
+    private final IdAllocator ids;
+    // free-slot lists for recently asked doctor-days
+    private final SlotCache slotCache = new SlotCache(
+            Integer.getInteger("clinicflow.slotCache.entries", 4096));
+    // slots reserved by a desk while it fills in the booking form
+    private final SlotHolds holds = new SlotHolds(
+            Long.getLong("clinicflow.hold.ttlSeconds", 120L), this::holdExpired);
+
+    // background file rewrites (patients.txt), one at a time
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "data-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean patientSavePending = new AtomicBoolean();
+
+    private final List<ClinicChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Timings, counts and sizes, published over JMX as clinicflow:type=Metrics
+    private final ClinicMetrics metrics = new ClinicMetrics();
+    private final ClinicMetrics.Timer getPatientTimer = metrics.timer("api.getPatient");
+    private final ClinicMetrics.Timer searchPatientsTimer = metrics.timer("api.searchPatients");
+    private final ClinicMetrics.Timer addPatientTimer = metrics.timer("api.addPatient");
+    private final ClinicMetrics.Timer scheduleTimer = metrics.timer("api.scheduleAppointment");
+    private final ClinicMetrics.Timer bookTimer = metrics.timer("api.book");
+    private final ClinicMetrics.Timer scheduleAllTimer = metrics.timer("api.scheduleAppointments");
+    private final ClinicMetrics.Timer bookAllTimer = metrics.timer("api.bookAll");
+    private final ClinicMetrics.Timer appointmentsForTimer = metrics.timer("api.getAppointmentsFor");
+    private final ClinicMetrics.Timer forDoctorTimer = metrics.timer("api.getAppointmentsForDoctor");
+    private final ClinicMetrics.Timer forDoctorRangeTimer = metrics.timer("api.getAppointmentsForDoctorRange");
+    private final ClinicMetrics.Timer cancelTimer = metrics.timer("api.cancelAppointment");
+    private final ClinicMetrics.Timer cancelAsyncTimer = metrics.timer("api.cancelAppointmentAsync");
+    private final ClinicMetrics.Timer freeSlotsTimer = metrics.timer("api.getAvailableTimeSlots");
+    private final ClinicMetrics.Timer firstFreeTimer = metrics.timer("api.getFirstAvailableSlots");
+    private final ClinicMetrics.Timer doctorsFreeAtTimer = metrics.timer("api.getDoctorsFreeAt");
+    private final ClinicMetrics.Timer findNextTimer = metrics.timer("api.findNextAvailable");
+    private final ClinicMetrics.Timer flushTimer = metrics.timer("api.flush");
+    private final ClinicMetrics.Timer conflictCheckTimer = metrics.timer("booking.conflictCheck");
+    private final ClinicMetrics.Timer durableTimer = metrics.timer("journal.durable");
+    private final LongAdder conflicts = metrics.counter("booking.conflicts");
+    private final LongAdder rejectedBookings = metrics.counter("booking.rejected");
+    private final LongAdder rejectedBatches = metrics.counter("booking.batchesRejected");
+    private final LongAdder cancelMisses = metrics.counter("cancel.notFound");
+    private final LongAdder listenerFailures = metrics.counter("listener.failures");
+    private final LongAdder heldBookings = metrics.counter("booking.held");
+    private final LongAdder holdsTaken = metrics.counter("holds.taken");
+    private final LongAdder holdsRefused = metrics.counter("holds.refused");
+    private final LongAdder holdsExpired = metrics.counter("holds.expired");
 
     public AppointmentManager() {
-        loadStaff();
-        loadPatients();
-        loadDoctors();
-        loadAppointments();
+        this(null);
+    }
+
+    // Reads and writes the data files in dataDir (null = working directory)
+    public AppointmentManager(File dataDir) {
+        STAFF_FILE = dataFile(dataDir, "staff.txt");
+        PATIENT_FILE = dataFile(dataDir, "patients.txt");
+        DOCTOR_FILE = dataFile(dataDir, "doctors.txt");
+        SCHEDULE_FILE = dataFile(dataDir, "schedules.txt");
+        // clinicflow.snapshot.format=BINARY keeps the snapshot in appointments.bin
+        AppointmentJournal.SnapshotFormat format = snapshotFormat();
+        APPOINTMENT_TEXT_FILE = dataFile(dataDir, "appointments.txt");
+        APPOINTMENT_FILE = format == AppointmentJournal.SnapshotFormat.BINARY
+                ? dataFile(dataDir, "appointments.bin") : APPOINTMENT_TEXT_FILE;
+        APPOINTMENT_LOG_FILE = dataFile(dataDir, "appointments.log");
+        APPOINTMENT_REJECT_FILE = dataFile(dataDir, "appointments.rejected.txt");
+        ARCHIVE_DIR = dataFile(dataDir, "appointments.d");
+        ID_FILE = dataFile(dataDir, "ids.txt");
+
+        journal = AppointmentJournal.fromSystemProperties(APPOINTMENT_FILE, APPOINTMENT_LOG_FILE, format);
+        // the last year of history stays cached (compact, and off the heap
+        // unless clinicflow.archive.offHeap=false); older months are re-read
+        archive = new AppointmentArchive(ARCHIVE_DIR, format,
+                Integer.getInteger("clinicflow.archive.cachedMonths", 12),
+                Boolean.parseBoolean(System.getProperty("clinicflow.archive.offHeap", "true")));
+        ids = new IdAllocator(ID_FILE);
+        long loadStart = System.nanoTime();
+        timed("load.staff", this::loadStaff);
+        timed("load.patients", this::loadPatients);
+        timed("load.doctors", this::loadDoctors);
+        timed("load.schedules", this::loadSchedules);
+        timed("load.appointments", this::loadAppointments);
+
+        // restore id high-water marks once; allocation is O(1) from here on
+        for (Patient p : patients.all()) {
+            ids.observePatientId(p.getId());
+        }
+        metrics.timer("load.total").record(loadStart);
+
+        metrics.gauge("size.appointments", appointments::size);
+        metrics.gauge("size.patients", patients::size);
+        metrics.gauge("size.doctors", doctors::size);
+        metrics.gauge("size.archivedMonths", archive::monthCount);
+        metrics.gauge("size.archiveCachedMonths", archive::cachedMonthCount);
+        metrics.gauge("size.archiveHeapBytes", archive::cachedHeapBytes);
+        metrics.gauge("size.archiveOffHeapBytes", archive::cachedOffHeapBytes);
+        metrics.gauge("size.listeners", listeners::size);
+        metrics.gauge("size.slotCache", slotCache::size);
+        metrics.gauge("size.holds", holds::size);
+        metrics.gauge("slotCache.hits", slotCache::hits);
+        metrics.gauge("slotCache.misses", slotCache::misses);
+        metrics.gauge("slotCache.invalidations", slotCache::invalidations);
+        metrics.gauge("slotCache.evictions", slotCache::evictions);
+        metrics.register(dataDir == null ? new File("").getAbsolutePath() : dataDir.getAbsolutePath());
+        // clinicflow.metrics.dumpSeconds=N prints every metric to stdout every N seconds
+        long dumpSeconds = Long.getLong("clinicflow.metrics.dumpSeconds", 0L);
+        if (dumpSeconds > 0) {
+            metrics.startDump(dumpSeconds, System.out);
+        }
+    }
+
+    private void timed(String phase, Runnable work) {
+        long start = System.nanoTime();
+        work.run();
+        metrics.timer(phase).record(start);
+    }
+
+    /** Timers, counters and sizes for this manager (also registered over JMX). */
+    public ClinicMetrics getMetrics() {
+        return metrics;
+    }
+
+    private static String dataFile(File dataDir, String name) {
+        return dataDir == null ? name : new File(dataDir, name).getPath();
+    }
+
+    private static AppointmentJournal.SnapshotFormat snapshotFormat() {
+        try {
+            return AppointmentJournal.SnapshotFormat.valueOf(
+                    System.getProperty("clinicflow.snapshot.format", "TEXT").trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown snapshot format, using TEXT: " + e.getMessage());
+            return AppointmentJournal.SnapshotFormat.TEXT;
+        }
+    }
+
+    // ---------- Change listeners ----------
+
+    public void addChangeListener(ClinicChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ClinicChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // A failing listener must not undo or block the change it is told about
+    private void fire(Consumer<ClinicChangeListener> event) {
+        for (ClinicChangeListener l : listeners) {
+            try {
+                event.accept(l);
+            } catch (RuntimeException e) {
+                listenerFailures.increment();
+                System.err.println("Change listener failed: " + e);
+            }
+        }
     }
 
     // ---------- Auth ----------
@@ -36,187 +210,532 @@ public class AppointmentManager {
 
     // ---------- Patient management ----------
 
+    // Read-only, in the order patients were added
     public List<Patient> getAllPatients() {
-        return new ArrayList<>(patients);
+        return patients.all();
     }
 
     public Patient getPatient(String patientId) {
-        for (Patient p : patients) {
-            if (p.getId().equals(patientId)) {
-                return p;
-            }
-        }
-        return null;
+        long start = System.nanoTime();
+        Patient p = patients.get(patientId);
+        getPatientTimer.record(start);
+        return p;
+    }
+
+    /**
+     * Best matches for a type-ahead query over name, id and phone digits,
+     * at most limit of them. An empty query gives the first patients.
+     */
+    public List<Patient> searchPatients(String query, int limit) {
+        long start = System.nanoTime();
+        List<Patient> result = patientIndex.search(query, limit);
+        searchPatientsTimer.record(start);
+        return result;
     }
 
+    /**
+     * Adds a patient with the next free id. Returns null if name or contact
+     * is blank or holds a ';' or a control character (a line break would
+     * split the patients.txt row).
+     */
     public Patient addPatient(String name, String contact) {
-        // Simple auto ID: P<number>
-        int max = 99;
-        for (Patient p : patients) {
-            String id = p.getId();
-            if (id != null && id.startsWith("P")) {
-                try {
-                    int n = Integer.parseInt(id.substring(1));
-                    if (n > max) {
-                        max = n;
-                    }
-                } catch (NumberFormatException ignore) {
-                }
-            }
+        if (!isPatientField(name) || !isPatientField(contact)) {
+            return null;
         }
-        String newId = "P" + (max + 1);
+        long start = System.nanoTime();
+        // Simple auto ID: P<number>
+        String newId = ids.nextPatientId();
         Patient p = new Patient(newId, name, contact);
-        patients.add(p);
-        savePatients();
+        registerPatient(p);
+        savePatientsLater();
+        fire(l -> l.patientAdded(p));
+        addPatientTimer.record(start);
         return p;
     }
 
+    /** True if s can be stored as a patient's name or contact. */
+    public static boolean isPatientField(String s) {
+        if (s == null || s.trim().isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ';' || Character.isISOControl(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // ---------- Doctor management ----------
 
+    // Read-only, in file order
     public List<Doctor> getAllDoctors() {
-        return new ArrayList<>(doctors);
+        return doctors.all();
     }
 
     public Doctor getDoctor(String doctorId) {
-        for (Doctor d : doctors) {
-            if (d.getId().equals(doctorId)) {
-                return d;
-            }
-        }
-        return null;
+        return doctors.get(doctorId);
     }
 
     // ---------- Appointments ----------
 
+    // Books and waits until the booking is on disk
     public boolean scheduleAppointment(String doctorId, LocalDate date,
                                        LocalTime time, String patientId) {
+        long start = System.nanoTime();
+        BookingResult result = book(new BookingRequest(doctorId, date, time, patientId));
+        result.whenDurable().join();
+        scheduleTimer.record(start);
+        return result.isBooked();
+    }
 
-        Patient patient = getPatient(patientId);
-        if (patient == null) {
-            return false;
-        }
+    /**
+     * Books one appointment in memory and returns at once; the journal
+     * record is forced to disk in the background and result.whenDurable()
+     * completes when it is. Safe to call from the Swing event thread.
+     */
+    public BookingResult book(BookingRequest request) {
+        long start = System.nanoTime();
+        BookingResult result = doBook(request);
+        bookTimer.record(start);
+        return result;
+    }
 
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime requested = LocalDateTime.of(date, time);
+    private BookingResult doBook(BookingRequest request) {
+        String doctorId = request.getDoctorId();
+        LocalDate date = request.getDate();
+        LocalTime time = request.getTime();
+
+        if (patients.get(request.getPatientId()) == null) {
+            rejectedBookings.increment();
+            return new BookingResult(request, BookingResult.Status.UNKNOWN_PATIENT, null);
+        }
 
         // Block any time in the past
-        if (requested.isBefore(now)) {
-            return false;
+        if (LocalDateTime.of(date, time).isBefore(LocalDateTime.now())) {
+            rejectedBookings.increment();
+            return new BookingResult(request, BookingResult.Status.IN_PAST, null);
         }
 
-        // Check doctor availability
-        for (Appointment appt : appointments) {
-            if (appt.getDoctorId().equals(doctorId)
-                    && appt.getDate().equals(date)
-                    && appt.getTime().equals(time)) {
-                return false; // conflict
+        // Check doctor availability and book under the doctor's lock, so two
+        // desks can never both get the same slot. Other doctors aren't blocked.
+        Appointment newAppt;
+        long seq;
+        long checkStart = System.nanoTime();
+        Lock lock = appointments.lockFor(doctorId);
+        lock.lock();
+        try {
+            boolean taken = appointments.isBooked(doctorId, date, time);
+            conflictCheckTimer.record(checkStart); // includes waiting for the doctor's lock
+            if (taken) {
+                conflicts.increment();
+                return new BookingResult(request, BookingResult.Status.CONFLICT, null);
             }
-        }
+            if (holds.isHeldByOther(doctorId, date, time, request.getHold())) {
+                heldBookings.increment();
+                return new BookingResult(request, BookingResult.Status.HELD, null);
+            }
+
+            int newId = ids.nextAppointmentId();
 
-        int newId = 1;
-        for (Appointment appt : appointments) {
-            if (appt.getId() >= newId) {
-                newId = appt.getId() + 1;
+            newAppt = new Appointment(newId, doctorId, date, time, request.getPatientId());
+            appointments.add(newAppt);
+            slotCache.invalidate(doctorId, date);
+            if (request.getHold() != null) {
+                holds.release(request.getHold()); // used up
             }
+            seq = journal.logBooked(newAppt);
+        } finally {
+            lock.unlock();
         }
+        Appointment booked = newAppt;
+        fire(l -> l.appointmentBooked(booked));
+        return new BookingResult(request, BookingResult.Status.BOOKED, newAppt, persist(seq));
+    }
 
-        Appointment newAppt = new Appointment(newId, doctorId, date, time, patientId);
-        appointments.add(newAppt);
-        saveAppointments();
-        return true;
+    /**
+     * Books a whole set of appointments at once, all or nothing, and waits
+     * until they are on disk. See bookAll.
+     */
+    public List<BookingResult> scheduleAppointments(List<BookingRequest> requests) {
+        long start = System.nanoTime();
+        List<BookingResult> results = bookAll(requests);
+        if (!results.isEmpty()) {
+            results.get(0).whenDurable().join(); // the batch shares one write
+        }
+        scheduleAllTimer.record(start);
+        return results;
     }
 
-    public List<Appointment> getAppointmentsFor(String doctorId, LocalDate date) {
-        List<Appointment> result = new ArrayList<>();
-        for (Appointment appt : appointments) {
-            if (appt.getDoctorId().equals(doctorId)
-                    && appt.getDate().equals(date)) {
-                result.add(appt);
+    /**
+     * Books a whole set of appointments at once, all or nothing.
+     *
+     * Every request is checked (patient, past time, the doctor's existing
+     * bookings and the other requests in the batch) while the locks of all
+     * the doctors involved are held. If any request fails nothing is booked,
+     * and the valid ones come back as NOT_APPLIED. Otherwise every booking
+     * goes to the journal in a single write, forced in the background; the
+     * results share one whenDurable() future.
+     * Returns one result per request, in request order.
+     */
+    public List<BookingResult> bookAll(List<BookingRequest> requests) {
+        long start = System.nanoTime();
+        List<BookingResult> result = doBookAll(requests);
+        bookAllTimer.record(start);
+        return result;
+    }
+
+    private List<BookingResult> doBookAll(List<BookingRequest> requests) {
+        List<BookingResult> results = new ArrayList<>(requests.size());
+        LocalDateTime now = LocalDateTime.now();
+        Set<String> doctorIds = new HashSet<>();
+        for (BookingRequest r : requests) {
+            doctorIds.add(r.getDoctorId());
+        }
+
+        List<Appointment> booked = new ArrayList<>(requests.size());
+        long seq;
+        List<Lock> locks = appointments.locksFor(doctorIds);
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+        try {
+            boolean allOk = true;
+            Set<String> slotsInBatch = new HashSet<>();
+            for (BookingRequest r : requests) {
+                BookingResult.Status status = null;
+                if (patients.get(r.getPatientId()) == null) {
+                    status = BookingResult.Status.UNKNOWN_PATIENT;
+                } else if (LocalDateTime.of(r.getDate(), r.getTime()).isBefore(now)) {
+                    status = BookingResult.Status.IN_PAST;
+                } else if (appointments.isBooked(r.getDoctorId(), r.getDate(), r.getTime())) {
+                    status = BookingResult.Status.CONFLICT;
+                    conflicts.increment();
+                } else if (holds.isHeldByOther(r.getDoctorId(), r.getDate(), r.getTime(), r.getHold())) {
+                    status = BookingResult.Status.HELD;
+                    heldBookings.increment();
+                } else if (!slotsInBatch.add(r.getDoctorId() + ";" + r.getDate() + ";" + r.getTime())) {
+                    status = BookingResult.Status.DUPLICATE_IN_BATCH;
+                }
+                if (status != null) {
+                    allOk = false;
+                }
+                results.add(new BookingResult(r, status, null));
+            }
+
+            if (!allOk) {
+                rejectedBatches.increment();
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i).getStatus() == null) {
+                        results.set(i, new BookingResult(requests.get(i), BookingResult.Status.NOT_APPLIED, null));
+                    }
+                }
+                return results;
+            }
+
+            int firstId = requests.isEmpty() ? 0 : ids.nextAppointmentIds(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                BookingRequest r = requests.get(i);
+                Appointment appt = new Appointment(firstId + i, r.getDoctorId(),
+                        r.getDate(), r.getTime(), r.getPatientId());
+                appointments.add(appt);
+                slotCache.invalidate(appt.getDoctorId(), appt.getDate());
+                if (r.getHold() != null) {
+                    holds.release(r.getHold());
+                }
+                booked.add(appt);
             }
+            seq = journal.logBookedAll(booked);
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+
+        CompletableFuture<Boolean> durable = persist(seq);
+        for (int i = 0; i < requests.size(); i++) {
+            results.set(i, new BookingResult(requests.get(i), BookingResult.Status.BOOKED, booked.get(i), durable));
+        }
+        for (Appointment appt : booked) {
+            fire(l -> l.appointmentBooked(appt));
         }
-        result.sort(Comparator.comparing(Appointment::getTime));
+        return results;
+    }
+
+    public List<Appointment> getAppointmentsFor(String doctorId, LocalDate date) {
+        long start = System.nanoTime();
+        List<Appointment> result = doGetAppointmentsFor(doctorId, date);
+        appointmentsForTimer.record(start);
         return result;
     }
 
-    // All appointments for a doctor, across all dates
+    private List<Appointment> doGetAppointmentsFor(String doctorId, LocalDate date) {
+        // already sorted by time
+        if (date.isBefore(activeFrom)) {
+            return archive.forRange(doctorId, date, date);
+        }
+        return appointments.forDay(doctorId, date);
+    }
+
+    // All appointments for a doctor, across all dates, sorted by date then time.
+    // Reads every archived month.
     public List<Appointment> getAppointmentsForDoctor(String doctorId) {
-        List<Appointment> result = new ArrayList<>();
-        for (Appointment appt : appointments) {
-            if (appt.getDoctorId().equals(doctorId)) {
-                result.add(appt);
-            }
+        long start = System.nanoTime();
+        List<Appointment> result = archive.forDoctor(doctorId);
+        result.addAll(appointments.forDoctor(doctorId));
+        forDoctorTimer.record(start);
+        return result;
+    }
+
+    // Appointments for a doctor between two dates (inclusive), sorted by date then time
+    public List<Appointment> getAppointmentsForDoctor(String doctorId, LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        List<Appointment> result = doGetAppointmentsForDoctor(doctorId, from, to);
+        forDoctorRangeTimer.record(start);
+        return result;
+    }
+
+    private List<Appointment> doGetAppointmentsForDoctor(String doctorId, LocalDate from, LocalDate to) {
+        if (!from.isBefore(activeFrom)) {
+            return appointments.forRange(doctorId, from, to);
         }
-        // sort by date, then time
-        result.sort(
-                Comparator.comparing(Appointment::getDate)
-                        .thenComparing(Appointment::getTime)
-        );
+        List<Appointment> result = archive.forRange(doctorId, from,
+                to.isBefore(activeFrom) ? to : activeFrom.minusDays(1));
+        result.addAll(appointments.forRange(doctorId, from, to));
         return result;
     }
 
+    // Cancels and waits until the cancellation is on disk
     public boolean cancelAppointment(int appointmentId) {
-        Iterator<Appointment> it = appointments.iterator();
-        boolean removed = false;
-        while (it.hasNext()) {
-            Appointment appt = it.next();
-            if (appt.getId() == appointmentId) {
-                it.remove();
-                removed = true;
-                break;
+        long start = System.nanoTime();
+        boolean result = doCancelAppointment(appointmentId);
+        cancelTimer.record(start);
+        return result;
+    }
+
+    private boolean doCancelAppointment(int appointmentId) {
+        long seq = cancelInMemory(appointmentId);
+        if (seq < 0) {
+            return false;
+        }
+        journal.sync(seq);
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Cancels in memory at once. The future completes with true once the
+     * cancellation is on disk, or with false if there was nothing to cancel
+     * (at once) or it could not be saved.
+     */
+    public CompletableFuture<Boolean> cancelAppointmentAsync(int appointmentId) {
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> result = doCancelAppointmentAsync(appointmentId);
+        cancelAsyncTimer.record(start);
+        return result;
+    }
+
+    private CompletableFuture<Boolean> doCancelAppointmentAsync(int appointmentId) {
+        long seq = cancelInMemory(appointmentId);
+        if (seq < 0) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return persist(seq);
+    }
+
+    // Journal sequence number of the cancellation, or -1 if nothing was cancelled
+    private long cancelInMemory(int appointmentId) {
+        Appointment appt = appointments.get(appointmentId);
+        if (appt == null) {
+            return cancelArchived(appointmentId);
+        }
+        long seq;
+        Lock lock = appointments.lockFor(appt.getDoctorId());
+        lock.lock();
+        try {
+            if (appointments.remove(appointmentId) == null) {
+                cancelMisses.increment();
+                return -1; // cancelled by someone else meanwhile
             }
+            slotCache.invalidate(appt.getDoctorId(), appt.getDate());
+            seq = journal.logCancelled(appointmentId);
+        } finally {
+            lock.unlock();
         }
-        if (removed) {
-            saveAppointments();
+        fire(l -> l.appointmentCancelled(appt));
+        return seq;
+    }
+
+    // Past months are not in memory: the month file is rewritten (and on
+    // disk before this returns), and the cancel is journalled like any other
+    private long cancelArchived(int appointmentId) {
+        Appointment appt;
+        try {
+            appt = archive.remove(appointmentId);
+        } catch (IOException e) {
+            System.err.println("Error cancelling archived appointment " + appointmentId + ": " + e.getMessage());
+            return -1;
         }
-        return removed;
+        if (appt == null) {
+            cancelMisses.increment();
+            return -1;
+        }
+        long seq = journal.logCancelled(appointmentId);
+        fire(l -> l.appointmentCancelled(appt));
+        return seq;
+    }
+
+    // Forces journal record seq on the flusher thread, then compacts if due
+    private CompletableFuture<Boolean> persist(long seq) {
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> durable = journal.syncAsync(seq);
+        durable.thenRun(() -> {
+            durableTimer.record(start);
+            compactIfNeeded();
+        });
+        return durable;
+    }
+
+    /** Waits until every change made so far is on disk. */
+    public void flush() {
+        long start = System.nanoTime();
+        journal.flush();
+        try {
+            writer.submit(() -> { }).get(); // queued file rewrites run in order
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            // closed; nothing queued
+        }
+        flushTimer.record(start);
+    }
+
+    /** Flushes everything to disk; call before the program exits. */
+    public void close() {
+        flush();
+        writer.shutdown();
+        journal.close();
+        holds.close();
+        metrics.stopDump();
+        metrics.unregister();
     }
+
     // ---------- Time slots helper ----------
 
     /**
      * Returns all available time slots for a given doctor and date.
-     * Slots are 30 minutes long, with a 5-minute gap between slots.
-     * Range: from 09:00 to 18:00 (last slot is ended by 18:00).
+     * Slots follow the doctor's schedule template (schedules.txt). Doctors
+     * without one get 30-minute slots with a 5-minute gap between slots,
+     * from 09:00 to 18:00 (last slot is ended by 18:00).
      * Already-booked slots and (if date is today) past slots are removed.
+     * Answered from the doctor-day's slot bitmap, not by scanning bookings,
+     * and cached per doctor-day until a booking or cancellation touches it
+     * (see SlotCache). The list is read-only.
      */
     public List<LocalTime> getAvailableTimeSlots(String doctorId, LocalDate date) {
-        List<LocalTime> result = new ArrayList<>();
-
-        // All booked times for this doctor on that date
-        Set<LocalTime> booked = new HashSet<>();
-        for (Appointment appt : appointments) {
-            if (appt.getDoctorId().equals(doctorId)
-                    && appt.getDate().equals(date)) {
-                booked.add(appt.getTime());
-            }
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        List<LocalTime> result = slotCache.get(doctorId, date, now,
+                () -> withoutHeld(doctorId, date, appointments.availability().freeSlots(doctorId, date, now)));
+        freeSlotsTimer.record(start);
+        return result;
+    }
+
+    /**
+     * As above, but still lists the slot of own (this desk's hold, may be
+     * null) while the hold lasts, so the desk keeps seeing what it picked.
+     */
+    public List<LocalTime> getAvailableTimeSlots(String doctorId, LocalDate date, SlotHolds.Hold own) {
+        List<LocalTime> free = getAvailableTimeSlots(doctorId, date);
+        if (own == null || !own.getDoctorId().equals(doctorId) || !own.getDate().equals(date)
+                || !holds.isLive(own)) {
+            return free;
+        }
+        int at = Collections.binarySearch(free, own.getTime());
+        if (at >= 0) {
+            return free;
         }
+        List<LocalTime> result = new ArrayList<>(free);
+        result.add(-at - 1, own.getTime());
+        return result;
+    }
 
-        LocalTime startOfDay = LocalTime.of(9, 0);
-        LocalTime endOfDay = LocalTime.of(18, 0);
+    private List<LocalTime> withoutHeld(String doctorId, LocalDate date, List<LocalTime> free) {
+        if (!holds.isEmpty()) {
+            free.removeIf(t -> holds.isHeldByOther(doctorId, date, t, null));
+        }
+        return free;
+    }
 
-        LocalDateTime now = LocalDateTime.now();
-        boolean isToday = date.equals(now.toLocalDate());
-
-        LocalTime t = startOfDay;
-        // slot is [t, t+30); must finish by 18:00
-        while (!t.plusMinutes(30).isAfter(endOfDay)) {
-            boolean free = !booked.contains(t);
-
-            boolean notPast = true;
-            if (isToday) {
-                LocalDateTime slotStart = LocalDateTime.of(date, t);
-                if (slotStart.isBefore(now)) {
-                    notPast = false;
-                }
-            }
+    // ---------- Slot holds ----------
 
-            if (free && notPast) {
-                result.add(t);
-            }
+    /**
+     * Holds a free slot for one desk while it fills in the booking form,
+     * for clinicflow.hold.ttlSeconds (default 120). Meanwhile the slot is
+     * left out of every free-slot search, and only a BookingRequest carrying
+     * the hold can book it; booking uses the hold up. Returns null if the
+     * slot is booked, held by another desk or in the past.
+     */
+    public SlotHolds.Hold holdSlot(String doctorId, LocalDate date, LocalTime time) {
+        if (LocalDateTime.of(date, time).isBefore(LocalDateTime.now())) {
+            holdsRefused.increment();
+            return null;
+        }
+        SlotHolds.Hold hold;
+        // under the doctor's lock, so no booking slips in between the check and the hold
+        Lock lock = appointments.lockFor(doctorId);
+        lock.lock();
+        try {
+            hold = appointments.isBooked(doctorId, date, time) ? null : holds.hold(doctorId, date, time);
+        } finally {
+            lock.unlock();
+        }
+        if (hold == null) {
+            holdsRefused.increment();
+            return null;
+        }
+        slotCache.invalidate(doctorId, date);
+        holdsTaken.increment();
+        return hold;
+    }
 
-            // 30-minute appointment + 5-minute gap = 35 minutes step
-            t = t.plusMinutes(35);
+    /** Gives a hold up, e.g. when the desk picks another time. */
+    public void releaseHold(SlotHolds.Hold hold) {
+        if (hold != null && holds.release(hold)) {
+            slotCache.invalidate(hold.getDoctorId(), hold.getDate());
         }
+    }
+
+    // Called by the hold sweeper when a hold lapses unused
+    private void holdExpired(SlotHolds.Hold hold) {
+        holdsExpired.increment();
+        slotCache.invalidate(hold.getDoctorId(), hold.getDate());
+    }
 
+    // The first n free, unheld slots for a doctor between two dates (inclusive)
+    public List<LocalDateTime> getFirstAvailableSlots(String doctorId, LocalDate from,
+                                                      LocalDate to, int n) {
+        long start = System.nanoTime();
+        List<LocalDateTime> result = appointments.availability()
+                .firstFree(doctorId, from, to, n, LocalDateTime.now(), null, holds);
+        firstFreeTimer.record(start);
+        return result;
+    }
+
+    // Doctors with a free, unheld slot starting at the given date and time
+    public List<Doctor> getDoctorsFreeAt(LocalDate date, LocalTime time) {
+        long start = System.nanoTime();
+        List<Doctor> all = doctors.all();
+        List<String> ids = new ArrayList<>(all.size());
+        for (Doctor d : all) {
+            ids.add(d.getId());
+        }
+        List<Doctor> result = new ArrayList<>();
+        for (String id : appointments.availability().doctorsFreeAt(ids, date, time, LocalDateTime.now(), holds)) {
+            result.add(doctors.get(id));
+        }
+        doctorsFreeAtTimer.record(start);
         return result;
     }
 
@@ -253,8 +772,8 @@ public class AppointmentManager {
     private void loadPatients() {
         File file = new File(PATIENT_FILE);
         if (!file.exists()) {
-            patients.add(new Patient("P100", "John Doe", "555-1234"));
-            patients.add(new Patient("P101", "Jane Smith", "555-9876"));
+            registerPatient(new Patient("P100", "John Doe", "555-1234"));
+            registerPatient(new Patient("P101", "Jane Smith", "555-9876"));
             savePatients();
             return;
         }
@@ -264,7 +783,7 @@ public class AppointmentManager {
             while ((line = br.readLine()) != null) {
                 String[] parts = line.split(";", 3);
                 if (parts.length == 3) {
-                    patients.add(new Patient(parts[0], parts[1], parts[2]));
+                    registerPatient(new Patient(parts[0], parts[1], parts[2]));
                 }
             }
         } catch (IOException e) {
@@ -272,14 +791,32 @@ public class AppointmentManager {
         }
     }
 
-    private void savePatients() {
+    private void registerPatient(Patient p) {
+        if (patients.add(p)) {
+            patientIndex.add(p);
+        }
+    }
+
+    // Rewrites patients.txt on the writer thread; a burst of adds shares one rewrite
+    private void savePatientsLater() {
+        if (patientSavePending.compareAndSet(false, true)) {
+            writer.execute(() -> {
+                patientSavePending.set(false);
+                savePatients();
+            });
+        }
+    }
+
+    private synchronized void savePatients() {
+        long start = System.nanoTime();
         try (PrintWriter pw = new PrintWriter(new FileWriter(PATIENT_FILE))) {
-            for (Patient p : patients) {
+            for (Patient p : patients.all()) {
                 pw.println(p.getId() + ";" + p.getName() + ";" + p.getContact());
             }
         } catch (IOException e) {
             System.err.println("Error writing patients file: " + e.getMessage());
         }
+        metrics.timer("save.patients").record(start);
     }
 
     // ---------- Load / save doctors ----------
@@ -305,58 +842,250 @@ public class AppointmentManager {
                     doctors.add(new Doctor(id, name, spec));
                 }
             }
+            doctorsLoaded = doctors.size() > 0;
         } catch (IOException e) {
             System.err.println("Error reading doctors file: " + e.getMessage());
         }
     }
 
-    private void saveDoctors() {
+    private synchronized void saveDoctors() {
+        long start = System.nanoTime();
         try (PrintWriter pw = new PrintWriter(new FileWriter(DOCTOR_FILE))) {
-            for (Doctor d : doctors) {
+            for (Doctor d : doctors.all()) {
                 pw.println(d.getId() + ";" + d.getName() + ";" + d.getSpecialty());
             }
         } catch (IOException e) {
             System.err.println("Error writing doctors file: " + e.getMessage());
         }
+        metrics.timer("save.doctors").record(start);
     }
 
-    // ---------- Load / save appointments ----------
+    // ---------- Slot search ----------
 
-    private void loadAppointments() {
-        File file = new File(APPOINTMENT_FILE);
+    /**
+     * The earliest n free slots across all doctors, or only those whose
+     * specialty matches (case-insensitive; null or empty means any), from
+     * now up to horizonDays ahead. Sorted by date and time.
+     */
+    public List<AvailableSlot> findNextAvailable(String specialty, int n, int horizonDays) {
+        long start = System.nanoTime();
+        List<String> ids = new ArrayList<>();
+        for (Doctor d : doctors.all()) {
+            if (specialty == null || specialty.isEmpty()
+                    || specialty.equalsIgnoreCase(d.getSpecialty())) {
+                ids.add(d.getId());
+            }
+        }
+        LocalDate today = LocalDate.now();
+        List<AvailableSlot> result = new SlotSearch(appointments.availability(), holds)
+                .earliest(ids, today, today.plusDays(horizonDays), n, LocalDateTime.now());
+        findNextTimer.record(start);
+        return result;
+    }
+
+    // Distinct doctor specialties, in doctor order
+    public List<String> getSpecialties() {
+        Set<String> result = new LinkedHashSet<>();
+        for (Doctor d : doctors.all()) {
+            if (d.getSpecialty() != null && !d.getSpecialty().isEmpty()) {
+                result.add(d.getSpecialty());
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    // ---------- Schedules ----------
+
+    public ScheduleTemplate getSchedule(String doctorId) {
+        return appointments.availability().templateFor(doctorId);
+    }
+
+    /**
+     * Replaces a doctor's schedule with the given rules (see ScheduleTemplate
+     * for the format; an empty list means the clinic default). Only the
+     * doctor's booked days whose slots change are recomputed.
+     * Returns false if a rule is malformed, or if the new slots would cut
+     * short an appointment from today on: its time would partly be offered
+     * again. Those appointments are listed on stderr; move or cancel them
+     * first.
+     */
+    public synchronized boolean setSchedule(String doctorId, List<String> rules) {
+        ScheduleTemplate template;
+        try {
+            template = ScheduleTemplate.compile(rules);
+        } catch (RuntimeException e) {
+            System.err.println("Bad schedule for " + doctorId + ": " + e.getMessage());
+            return false;
+        }
+        ScheduleTemplate old = appointments.availability().templateFor(doctorId);
+        List<Appointment> cutShort = appointments.setTemplate(doctorId, template, LocalDate.now());
+        if (!cutShort.isEmpty()) {
+            System.err.println("Schedule for " + doctorId + " not changed; it would cut short " + cutShort);
+            return false;
+        }
+        // only days whose grid changed; that covers the booked days setTemplate
+        // rebuilt, and free days too, whose cached lists follow the grid
+        slotCache.invalidateDays(doctorId, date -> !template.gridFor(date).equals(old.gridFor(date)));
+        if (template == ScheduleTemplate.DEFAULT) {
+            schedules.remove(doctorId);
+        } else {
+            schedules.put(doctorId, template);
+        }
+        saveSchedules();
+        return true;
+    }
+
+    private void loadSchedules() {
+        File file = new File(SCHEDULE_FILE);
         if (!file.exists()) {
-            return;
+            return; // everyone on the clinic default
         }
 
+        Map<String, List<String>> rules = new LinkedHashMap<>();
         try (BufferedReader br = new BufferedReader(new FileReader(file))) {
             String line;
             while ((line = br.readLine()) != null) {
-                // id;patientId;doctorId;date;time
-                String[] parts = line.split(";", 5);
-                if (parts.length == 5) {
-                    int id = Integer.parseInt(parts[0]);
-                    String patientId = parts[1];
-                    String doctorId = parts[2];
-                    LocalDate date = LocalDate.parse(parts[3], DATE_FMT);
-                    LocalTime time = LocalTime.parse(parts[4], TIME_FMT);
-                    appointments.add(new Appointment(id, doctorId, date, time, patientId));
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                // doctorId;days;hours;slot;gap[;breaks]
+                String[] parts = line.split(";", 2);
+                if (parts.length == 2) {
+                    rules.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(parts[1]);
                 }
             }
         } catch (IOException e) {
-            System.err.println("Error reading appointments file: " + e.getMessage());
+            System.err.println("Error reading schedules file: " + e.getMessage());
+        }
+
+        for (Map.Entry<String, List<String>> e : rules.entrySet()) {
+            try {
+                ScheduleTemplate template = ScheduleTemplate.compile(e.getValue());
+                schedules.put(e.getKey(), template);
+                appointments.setTemplate(e.getKey(), template, null);
+            } catch (RuntimeException ex) {
+                System.err.println("Bad schedule for " + e.getKey() + ", using default: " + ex.getMessage());
+            }
         }
     }
 
-    private void saveAppointments() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(APPOINTMENT_FILE))) {
-            for (Appointment appt : appointments) {
-                String dateStr = appt.getDate().format(DATE_FMT);
-                String timeStr = appt.getTime().format(TIME_FMT);
-                pw.println(appt.getId() + ";" + appt.getPatientId() + ";"
-                        + appt.getDoctorId() + ";" + dateStr + ";" + timeStr);
+    private void saveSchedules() {
+        long start = System.nanoTime();
+        try (PrintWriter pw = new PrintWriter(new FileWriter(SCHEDULE_FILE))) {
+            for (Map.Entry<String, ScheduleTemplate> e : schedules.entrySet()) {
+                for (String rule : e.getValue().rules()) {
+                    pw.println(e.getKey() + ";" + rule);
+                }
             }
         } catch (IOException e) {
-            System.err.println("Error writing appointments file: " + e.getMessage());
+            System.err.println("Error writing schedules file: " + e.getMessage());
+        }
+        metrics.timer("save.schedules").record(start);
+    }
+
+    // ---------- Load / save appointments ----------
+
+    private void loadAppointments() {
+        // Snapshot straight into the index, then the journal on top.
+        // Rows for unknown doctors are quarantined, but only against a real
+        // doctor list: with doctors.txt missing or unreadable every row would
+        // go, and the next compaction would drop them from the snapshot.
+        if (!doctorsLoaded) {
+            System.err.println("No doctors loaded from " + DOCTOR_FILE
+                    + "; keeping appointments without checking their doctor");
+        }
+        AppointmentFileLoader loader = new AppointmentFileLoader(new IdInterner(),
+                doctorsLoaded ? doctors::contains : d -> true);
+        List<Appointment> clashes = new ArrayList<>();
+        int[] maxId = {0};
+        // switching to the binary format: import the text snapshot once
+        String snapshot = APPOINTMENT_FILE;
+        boolean importing = !new File(APPOINTMENT_FILE).exists()
+                && !APPOINTMENT_FILE.equals(APPOINTMENT_TEXT_FILE) && new File(APPOINTMENT_TEXT_FILE).exists();
+        if (importing) {
+            snapshot = APPOINTMENT_TEXT_FILE;
+        }
+        try {
+            AppointmentFileLoader.Report report = loader.load(Paths.get(snapshot),
+                    Paths.get(APPOINTMENT_REJECT_FILE), appt -> {
+                        maxId[0] = Math.max(maxId[0], appt.getId());
+                        if (!appointments.add(appt)) {
+                            clashes.add(appt);
+                        }
+                    });
+            metrics.counter("load.rejectedRows").add(report.getRejected());
+            if (report.getRejected() > 0) {
+                System.err.println("Skipped " + report.getRejected() + " bad rows in " + snapshot
+                        + " (copied to " + APPOINTMENT_REJECT_FILE + "): " + report.getProblems());
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading appointments file: " + e.getMessage());
+        }
+        ids.observeAppointmentId(maxId[0]);
+
+        // Replay is keyed by id, so a booking replayed twice or cancelled
+        // later ends up right. A snapshot written during compaction can hold
+        // an appointment and its replacement in the same slot; the journal
+        // settles which one stays.
+        Map<Integer, Appointment> lastReplayed = new HashMap<>(); // null value = cancelled
+        journal.replay(appt -> {
+            ids.observeAppointmentId(appt.getId());
+            lastReplayed.put(appt.getId(), appt);
+            appointments.remove(appt.getId());
+            if (!appointments.add(appt)) {
+                clashes.add(appt);
+            }
+        }, id -> {
+            lastReplayed.put(id, null);
+            appointments.remove(id);
+        });
+
+        // Retry clashes that are still the latest version of their id
+        for (Appointment appt : clashes) {
+            if (appointments.get(appt.getId()) != null) {
+                continue;
+            }
+            if (lastReplayed.containsKey(appt.getId()) && lastReplayed.get(appt.getId()) != appt) {
+                continue; // superseded by a later journal record
+            }
+            if (!appointments.add(appt)) {
+                System.err.println("Skipping double-booked appointment " + appt.getId()
+                        + " (" + appt.getDoctorId() + " " + appt.getDate() + " " + appt.getTime() + ")");
+            }
+        }
+
+        // Months before the current one move to the archive and stop taking heap
+        List<Appointment> aged = appointments.removeBefore(activeFrom);
+        if (!aged.isEmpty()) {
+            try {
+                archive.add(aged);
+            } catch (IOException e) {
+                System.err.println("Error archiving past appointments: " + e.getMessage());
+                for (Appointment appt : aged) {
+                    appointments.add(appt);
+                }
+                aged.clear();
+            }
+        }
+
+        // A crash mid-compaction leaves the rotated segment behind; the state
+        // replayed above covers it, so write that snapshot and drop the segment
+        if (journal.hasUnfinishedCompaction()) {
+            journal.finishCompaction(appointments.all());
+        }
+
+        // Rewrite the snapshot without them (and in the new format when importing)
+        if (importing || !aged.isEmpty()) {
+            journal.compactAsync(appointments::all);
+        }
+    }
+
+    // A booking costs one journal append; the full file is only rewritten
+    // by the journal's background compaction every few thousand changes.
+    private void compactIfNeeded() {
+        if (journal.needsCompaction()) {
+            journal.compactAsync(appointments::all);
         }
     }
 }
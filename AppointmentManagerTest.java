@@ -1,5 +1,13 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 
 public class AppointmentManagerTest {
@@ -18,6 +26,8 @@ public class AppointmentManagerTest {
             p = pats.get(0);
         }
         System.out.println("Using patient: " + p);
+        System.out.println("Patient found by ID (should be true): "
+                + manager.searchPatients(p.getId(), 5).get(0).equals(p));
 
         // Use an existing doctor
         List<Doctor> docs = manager.getAllDoctors();
@@ -31,11 +41,30 @@ public class AppointmentManagerTest {
         LocalDate date = LocalDate.now().plusDays(1);
         LocalTime time = LocalTime.of(10, 0);
 
+        // Listeners hear about each change as it is applied
+        List<String> events = new ArrayList<>();
+        manager.addChangeListener(new ClinicChangeListener() {
+            @Override
+            public void appointmentBooked(Appointment appt) {
+                events.add("booked " + appt.getId());
+            }
+
+            @Override
+            public void appointmentCancelled(Appointment appt) {
+                events.add("cancelled " + appt.getId());
+            }
+        });
+
+        manager.getAvailableTimeSlots(d.getId(), date); // now cached
         boolean first = manager.scheduleAppointment(d.getId(), date, time, p.getId());
         System.out.println("First schedule (should be true): " + first);
+        System.out.println("Booked slot no longer offered (should be true): "
+                + !manager.getAvailableTimeSlots(d.getId(), date).contains(time));
 
         boolean conflict = manager.scheduleAppointment(d.getId(), date, time, p.getId());
         System.out.println("Second schedule same slot (should be false): " + conflict);
+        System.out.println("Conflict counted in metrics (should be true): "
+                + (manager.getMetrics().counter("booking.conflicts").sum() == 1));
 
         List<Appointment> list = manager.getAppointmentsFor(d.getId(), date);
         System.out.println("Appointments on " + date + ": " + list);
@@ -44,6 +73,171 @@ public class AppointmentManagerTest {
             int id = list.get(0).getId();
             boolean canceled = manager.cancelAppointment(id);
             System.out.println("Canceled appointment " + id + ": " + canceled);
+            System.out.println("Listener saw the booking and the cancel (should be true): "
+                    + events.equals(List.of("booked " + id, "cancelled " + id)));
+        }
+
+        // Batch booking is all or nothing
+        LocalDate later = date.plusDays(7);
+        List<BookingRequest> batch = List.of(
+                new BookingRequest(d.getId(), later, LocalTime.of(9, 0), p.getId()),
+                new BookingRequest(d.getId(), later, LocalTime.of(9, 0), p.getId()));
+        List<BookingResult> results = manager.scheduleAppointments(batch);
+        System.out.println("Batch with a duplicate slot (should be NOT_APPLIED, DUPLICATE_IN_BATCH): "
+                + results.get(0).getStatus() + ", " + results.get(1).getStatus());
+        System.out.println("Nothing booked from failed batch (should be true): "
+                + manager.getAppointmentsFor(d.getId(), later).isEmpty());
+
+        // A held slot is hidden from other desks and only bookable with the hold
+        LocalTime heldTime = manager.getAvailableTimeSlots(d.getId(), later).get(0);
+        SlotHolds.Hold hold = manager.holdSlot(d.getId(), later, heldTime);
+        System.out.println("Held slot hidden and refused to others (should be true): "
+                + (hold != null && !manager.getAvailableTimeSlots(d.getId(), later).contains(heldTime)
+                && !manager.getDoctorsFreeAt(later, heldTime).contains(d)
+                && manager.book(new BookingRequest(d.getId(), later, heldTime, p.getId())).getStatus()
+                        == BookingResult.Status.HELD));
+        manager.releaseHold(hold);
+
+        // Booking returns at once; flush() waits for the disk
+        BookingResult quick = manager.book(new BookingRequest(d.getId(), later.plusDays(1), LocalTime.of(9, 0), p.getId()));
+        manager.flush();
+        System.out.println("Async booking durable after flush (should be true): "
+                + quick.whenDurable().getNow(false));
+        if (quick.isBooked()) {
+            manager.cancelAppointment(quick.getAppointment().getId());
+        }
+
+        // A schedule change may not shorten a booking and free part of its time
+        LocalDate regrid = later.plusDays(2);
+        BookingResult nine = manager.book(new BookingRequest(d.getId(), regrid, LocalTime.of(9, 0), p.getId()));
+        boolean changed = manager.setSchedule(d.getId(), List.of("ALL;09:00-18:00;20;0"));
+        List<LocalTime> offered = manager.getAvailableTimeSlots(d.getId(), regrid);
+        System.out.println("30-minute booking kept off a 20-minute grid (should be true): "
+                + (nine.isBooked() && !changed && !offered.contains(LocalTime.of(9, 0))
+                && !offered.contains(LocalTime.of(9, 20))));
+        if (changed) {
+            manager.setSchedule(d.getId(), List.of());
+        }
+        if (nine.isBooked()) {
+            manager.cancelAppointment(nine.getAppointment().getId());
+        }
+
+        // A line break in a patient field would split the patients.txt row
+        System.out.println("Patient name with a line break rejected over HTTP (should be 400): "
+                + postPatientOverHttp(manager, "{\"name\":\"A\\nP999;Evil;1\",\"contact\":\"x\"}"));
+        System.out.println("Idle session refused (should be 401): " + statusAfterIdleSession(manager));
+
+        int history = manager.getAppointmentsForDoctor(d.getId()).size();
+        manager.close();
+
+        // A fresh manager replays the journal on top of the snapshot
+        AppointmentManager reloaded = new AppointmentManager();
+        System.out.println("After reload, no appointments that day (should be true): "
+                + reloaded.getAppointmentsFor(d.getId(), date).isEmpty());
+        // past months come back from the archive on demand
+        System.out.println("Same history after reload (should be true): "
+                + (reloaded.getAppointmentsForDoctor(d.getId()).size() == history));
+        reloaded.close();
+
+        System.out.println("Archived appointment cancelled from its month file (should be true): "
+                + cancelFromArchive());
+        System.out.println("Archive cache keeps 2 of 3 months read (should be 2): " + cachedAfterReadingThreeMonths());
+    }
+
+    // Archives two appointments in a throwaway directory and cancels one
+    private static boolean cancelFromArchive() {
+        try {
+            Path dir = Files.createTempDirectory("archive");
+            LocalDate past = LocalDate.now().minusMonths(2).withDayOfMonth(1);
+            AppointmentArchive archive = new AppointmentArchive(dir.toString(),
+                    AppointmentJournal.SnapshotFormat.TEXT, 2, false);
+            archive.add(List.of(new Appointment(900001, "D1", past, LocalTime.of(9, 0), "P1"),
+                    new Appointment(900002, "D1", past, LocalTime.of(10, 0), "P1")));
+            Appointment removed = archive.remove(900001);
+            List<Appointment> left = new AppointmentArchive(dir.toString(),
+                    AppointmentJournal.SnapshotFormat.TEXT, 2, false).forDoctor("D1");
+            return removed != null && archive.remove(900001) == null
+                    && left.size() == 1 && left.get(0).getId() == 900002;
+        } catch (IOException e) {
+            System.err.println("Archive check failed: " + e);
+            return false;
+        }
+    }
+
+    // Reads three archived months through a two-month cache
+    private static int cachedAfterReadingThreeMonths() {
+        try {
+            Path dir = Files.createTempDirectory("archive");
+            LocalDate past = LocalDate.now().minusMonths(2).withDayOfMonth(1);
+            AppointmentArchive archive = new AppointmentArchive(dir.toString(),
+                    AppointmentJournal.SnapshotFormat.TEXT, 2, false);
+            archive.add(List.of(new Appointment(900001, "D1", past, LocalTime.of(9, 0), "P1"),
+                    new Appointment(900002, "D1", past.minusMonths(1), LocalTime.of(9, 0), "P1"),
+                    new Appointment(900003, "D1", past.minusMonths(2), LocalTime.of(9, 0), "P1")));
+            return archive.forDoctor("D1").size() == 3 ? archive.cachedMonthCount() : -1;
+        } catch (IOException e) {
+            System.err.println("Archive check failed: " + e);
+            return -1;
+        }
+    }
+
+    // Logs in as admin, lets the session sit idle past its time to live, then calls again
+    private static int statusAfterIdleSession(AppointmentManager manager) {
+        ClinicHttpServer server = null;
+        String idle = System.getProperty("clinicflow.http.sessionIdleSeconds");
+        try {
+            System.setProperty("clinicflow.http.sessionIdleSeconds", "1");
+            server = new ClinicHttpServer(manager, 0);
+            server.start();
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getPort() + "/api/";
+            String token = loginOverHttp(client, base);
+            Thread.sleep(1500);
+            return client.send(HttpRequest.newBuilder(URI.create(base + "doctors"))
+                    .header("Authorization", "Bearer " + token)
+                    .build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("HTTP check failed: " + e);
+            return -1;
+        } finally {
+            if (idle == null) {
+                System.clearProperty("clinicflow.http.sessionIdleSeconds");
+            } else {
+                System.setProperty("clinicflow.http.sessionIdleSeconds", idle);
+            }
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    private static String loginOverHttp(HttpClient client, String base) throws IOException, InterruptedException {
+        String login = client.send(HttpRequest.newBuilder(URI.create(base + "login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"admin\",\"password\":\"password\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString()).body();
+        return Json.parseObject(login).get("token");
+    }
+
+    // Logs in as admin on a throwaway server and posts a patient; returns the status
+    private static int postPatientOverHttp(AppointmentManager manager, String json) {
+        ClinicHttpServer server = null;
+        try {
+            server = new ClinicHttpServer(manager, 0);
+            server.start();
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getPort() + "/api/";
+            String token = loginOverHttp(client, base);
+            return client.send(HttpRequest.newBuilder(URI.create(base + "patients"))
+                    .header("Authorization", "Bearer " + token)
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("HTTP check failed: " + e);
+            return -1;
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
         }
     }
 }
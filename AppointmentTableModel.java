@@ -0,0 +1,301 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model over an appointment query result, shown a page at a time.
+ *
+ * The model wraps the result list as is: nothing is built per row up
+ * front, and a cell's value (including the patient lookup) is only
+ * computed when the table paints that cell. Sorting by a column builds one
+ * sorted view of the whole result, so pages follow the sort order.
+ * The result comes back sorted by date and time, which is the initial
+ * order.
+ *
+ * insert() and remove() apply a single booking or cancellation in place,
+ * so a change does not mean re-running the query. Both find their place
+ * by binary search, in the result and in the sorted view.
+ */
+public class AppointmentTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int DATE = 0;
+    public static final int TIME = 1;
+    public static final int PATIENT = 2;
+    public static final int PATIENT_ID = 3;
+    public static final int PHONE = 4;
+
+    private static final String[] COLUMNS = {"Date", "Time", "Patient", "Patient ID", "Phone"};
+    private static final Class<?>[] TYPES = {LocalDate.class, LocalTime.class, String.class, String.class, String.class};
+
+    private final Function<String, Patient> patients;
+    private final int pageSize;
+
+    private List<Appointment> rows = Collections.emptyList();
+    private final Map<Integer, Appointment> byId = new HashMap<>();
+    private List<Appointment> sorted; // rows in sorted order; null = as given
+    private int sortColumn = -1;    // -1 = as given
+    private boolean ascending = true;
+    private int page;
+
+    /**
+     * @param patients looks up the patient for the name and phone columns
+     * @param pageSize rows per page
+     */
+    public AppointmentTableModel(Function<String, Patient> patients, int pageSize) {
+        this.patients = patients;
+        this.pageSize = pageSize;
+    }
+
+    private static final Comparator<Appointment> BY_DATE_TIME =
+            Comparator.comparing(Appointment::getDate).thenComparing(Appointment::getTime);
+
+    /** Shows a new result (sorted by date and time), unsorted, from the first page. */
+    public void setAppointments(List<Appointment> appointments) {
+        // kept as is when possible; insert/remove edit it in place
+        rows = appointments instanceof ArrayList ? appointments : new ArrayList<>(appointments);
+        byId.clear();
+        for (Appointment appt : rows) {
+            byId.put(appt.getId(), appt);
+        }
+        sorted = null;
+        sortColumn = -1;
+        ascending = true;
+        page = 0;
+        fireTableDataChanged();
+    }
+
+    /** Total appointments across all pages. */
+    public int getTotalCount() {
+        return rows.size();
+    }
+
+    // ---------- Paging ----------
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getPageCount() {
+        return Math.max(1, (rows.size() + pageSize - 1) / pageSize);
+    }
+
+    public void setPage(int page) {
+        int p = Math.max(0, Math.min(page, getPageCount() - 1));
+        if (p != this.page) {
+            this.page = p;
+            fireTableDataChanged();
+        }
+    }
+
+    // ---------- Sorting ----------
+
+    /** Sorts by a column; sorting by the same column again reverses it. */
+    public void sortBy(int column) {
+        ascending = column != sortColumn || !ascending;
+        sortColumn = column;
+
+        Integer[] idx = new Integer[rows.size()];
+        for (int i = 0; i < idx.length; i++) {
+            idx[i] = i;
+        }
+        Comparator<Integer> cmp = comparatorFor(column);
+        Arrays.sort(idx, ascending ? cmp : cmp.reversed());
+        List<Appointment> view = new ArrayList<>(idx.length);
+        for (Integer i : idx) {
+            view.add(rows.get(i));
+        }
+        sorted = view;
+        page = 0;
+        fireTableDataChanged();
+    }
+
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    // Order of row indices for sortBy; text keys are looked up once per row
+    private Comparator<Integer> comparatorFor(int column) {
+        if (column == DATE || column == TIME) {
+            Comparator<Appointment> cmp = rowComparator(column);
+            return (i, j) -> cmp.compare(rows.get(i), rows.get(j));
+        }
+        String[] keys = new String[rows.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = textOf(rows.get(i), column);
+        }
+        return Comparator.<Integer, String>comparing(i -> keys[i], String.CASE_INSENSITIVE_ORDER)
+                .thenComparing((i, j) -> BY_DATE_TIME.compare(rows.get(i), rows.get(j)));
+    }
+
+    // The same order as comparatorFor, on appointments; ties go by date and time
+    private Comparator<Appointment> rowComparator(int column) {
+        if (column == DATE) {
+            return BY_DATE_TIME;
+        }
+        if (column == TIME) {
+            return Comparator.comparing(Appointment::getTime).thenComparing(BY_DATE_TIME);
+        }
+        return Comparator.comparing((Appointment a) -> textOf(a, column), String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(BY_DATE_TIME);
+    }
+
+    private String textOf(Appointment appt, int column) {
+        Object v = valueFor(appt, column);
+        return v == null ? "" : v.toString();
+    }
+
+    // ---------- Incremental updates ----------
+
+    /** Adds one appointment in its sorted place. Does nothing if it is already shown. */
+    public void insert(Appointment appt) {
+        if (byId.putIfAbsent(appt.getId(), appt) != null) {
+            return;
+        }
+        int pos = upperBound(rows, appt, BY_DATE_TIME);
+        rows.add(pos, appt);
+
+        int viewPos = pos;
+        if (sorted != null) {
+            viewPos = upperBound(sorted, appt, viewComparator());
+            sorted.add(viewPos, appt);
+        }
+        changedAt(viewPos);
+    }
+
+    /** Removes an appointment by id, if it is shown. */
+    public void remove(int appointmentId) {
+        Appointment appt = byId.remove(appointmentId);
+        if (appt == null) {
+            return;
+        }
+        int pos = find(rows, appt, BY_DATE_TIME);
+        rows.remove(pos);
+
+        int viewPos = pos;
+        if (sorted != null) {
+            viewPos = find(sorted, appt, viewComparator());
+            sorted.remove(viewPos);
+        }
+        changedAt(viewPos);
+    }
+
+    private Comparator<Appointment> viewComparator() {
+        Comparator<Appointment> cmp = rowComparator(sortColumn);
+        return ascending ? cmp : cmp.reversed();
+    }
+
+    // First position whose row sorts after appt
+    private static int upperBound(List<Appointment> list, Appointment appt, Comparator<Appointment> cmp) {
+        int lo = 0;
+        int hi = list.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cmp.compare(list.get(mid), appt) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Position of appt: binary search, then the id among rows that sort the same
+    private static int find(List<Appointment> list, Appointment appt, Comparator<Appointment> cmp) {
+        int at = Collections.binarySearch(list, appt, cmp);
+        if (at >= 0) {
+            for (int i = at; i >= 0 && cmp.compare(list.get(i), appt) == 0; i--) {
+                if (list.get(i).getId() == appt.getId()) {
+                    return i;
+                }
+            }
+            for (int i = at + 1; i < list.size() && cmp.compare(list.get(i), appt) == 0; i++) {
+                if (list.get(i).getId() == appt.getId()) {
+                    return i;
+                }
+            }
+        }
+        // a text key (e.g. a patient's name) changed since the sort
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).getId() == appt.getId()) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Appointment " + appt.getId() + " is not in the table");
+    }
+
+    // Only the current page and later ones move; earlier pages are untouched
+    private void changedAt(int viewPos) {
+        if (viewPos < (page + 1) * pageSize) {
+            setPage(page); // clamp if the last page emptied
+            fireTableDataChanged();
+        }
+    }
+
+    // ---------- Rows ----------
+
+    /** The appointment shown in a row of the current page. */
+    public Appointment appointmentAt(int row) {
+        int pos = page * pageSize + row;
+        return (sorted == null ? rows : sorted).get(pos);
+    }
+
+    @Override
+    public int getRowCount() {
+        return Math.max(0, Math.min(pageSize, rows.size() - page * pageSize));
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return TYPES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return valueFor(appointmentAt(row), column);
+    }
+
+    private Object valueFor(Appointment appt, int column) {
+        switch (column) {
+            case DATE:
+                return appt.getDate();
+            case TIME:
+                return appt.getTime();
+            case PATIENT_ID:
+                return appt.getPatientId();
+            case PATIENT: {
+                Patient p = patients.apply(appt.getPatientId());
+                return p != null ? p.getName() : appt.getPatientId();
+            }
+            case PHONE: {
+                Patient p = patients.apply(appt.getPatientId());
+                return p != null ? p.getContact() : null;
+            }
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Slot occupancy kept as one small bitmap per doctor-day.
+ *
+ * Bit i of a doctor-day is set when grid slot i is taken. A booking lasts
+ * one slot length of the day's grid and takes every slot it overlaps:
+ * its own slot when it is on the grid, the one or two slots it straddles
+ * when it is not. Bookings set bits, cancellations recompute the day from
+ * what is still booked; a free-slot query is ~booked & grid mask,
+ * minus the slots already past when the day is today, read a word at a
+ * time. Days with nothing booked have no bitmap at all.
+ *
+ * The grid for a doctor-day comes from the doctor's ScheduleTemplate, and
+ * each bitmap remembers the grid it was built against, so a query always
+ * pairs bits with the right slot times even mid template change.
+ *
+ * Bitmaps are replaced, never modified, so readers need no lock. Writers
+ * for a doctor must be serialized by the caller (AppointmentIndex does
+ * this with the doctor's lock stripe).
+ */
+public class AvailabilityIndex {
+
+    // A doctor-day's booked bits and the grid they index into
+    private static final class DayBits {
+        final SlotGrid grid;
+        final long[] bits;
+
+        DayBits(SlotGrid grid, long[] bits) {
+            this.grid = grid;
+            this.bits = bits;
+        }
+    }
+
+    private final ConcurrentMap<String, ConcurrentMap<Long, DayBits>> booked = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ScheduleTemplate> templates = new ConcurrentHashMap<>();
+
+    public ScheduleTemplate templateFor(String doctorId) {
+        return templates.getOrDefault(doctorId, ScheduleTemplate.DEFAULT);
+    }
+
+    public SlotGrid gridFor(String doctorId, LocalDate date) {
+        return templateFor(doctorId).gridFor(date);
+    }
+
+    /**
+     * Switches a doctor to a new template. Only the booked days whose grid
+     * actually changes get their bitmap rebuilt (from bookedDays, the times
+     * booked per date); every other day is untouched. Returns the dates
+     * whose grid changed. Caller holds the doctor's write lock.
+     */
+    public List<LocalDate> setTemplate(String doctorId, ScheduleTemplate template,
+                                       Map<LocalDate, ? extends Collection<LocalTime>> bookedDays) {
+        ScheduleTemplate old = templateFor(doctorId);
+        Map<Long, DayBits> rebuilt = new HashMap<>();
+        List<LocalDate> changed = new ArrayList<>();
+        for (Map.Entry<LocalDate, ? extends Collection<LocalTime>> e : bookedDays.entrySet()) {
+            LocalDate date = e.getKey();
+            SlotGrid grid = template.gridFor(date);
+            if (grid.equals(old.gridFor(date))) {
+                continue;
+            }
+            long[] bits = new long[grid.wordCount()];
+            for (LocalTime t : e.getValue()) {
+                occupy(grid, bits, t);
+            }
+            rebuilt.put(date.toEpochDay(), isEmpty(bits) ? null : new DayBits(grid, bits));
+            changed.add(date);
+        }
+
+        if (template == ScheduleTemplate.DEFAULT) {
+            templates.remove(doctorId);
+        } else {
+            templates.put(doctorId, template);
+        }
+        ConcurrentMap<Long, DayBits> days = booked.computeIfAbsent(doctorId, k -> new ConcurrentHashMap<>());
+        for (Map.Entry<Long, DayBits> e : rebuilt.entrySet()) {
+            if (e.getValue() == null) {
+                days.remove(e.getKey());
+            } else {
+                days.put(e.getKey(), e.getValue());
+            }
+        }
+        return changed;
+    }
+
+    // ---------- Updates ----------
+
+    public void markBooked(String doctorId, LocalDate date, LocalTime time) {
+        ConcurrentMap<Long, DayBits> days = booked.computeIfAbsent(doctorId, k -> new ConcurrentHashMap<>());
+        Long key = date.toEpochDay();
+        DayBits old = days.get(key);
+        SlotGrid grid = old != null ? old.grid : gridFor(doctorId, date);
+        long[] bits = old != null ? old.bits.clone() : new long[grid.wordCount()];
+        occupy(grid, bits, time);
+        store(days, key, grid, bits);
+    }
+
+    /**
+     * Recomputes a doctor-day after a cancellation from the times still
+     * booked on it, since slots can be shared by off-grid bookings.
+     */
+    public void markFree(String doctorId, LocalDate date, Collection<LocalTime> stillBooked) {
+        ConcurrentMap<Long, DayBits> days = booked.computeIfAbsent(doctorId, k -> new ConcurrentHashMap<>());
+        Long key = date.toEpochDay();
+        DayBits old = days.get(key);
+        SlotGrid grid = old != null ? old.grid : gridFor(doctorId, date);
+        long[] bits = new long[grid.wordCount()];
+        for (LocalTime t : stillBooked) {
+            occupy(grid, bits, t);
+        }
+        store(days, key, grid, bits);
+    }
+
+    private static void store(ConcurrentMap<Long, DayBits> days, Long key, SlotGrid grid, long[] bits) {
+        if (isEmpty(bits)) {
+            days.remove(key);
+        } else {
+            days.put(key, new DayBits(grid, bits));
+        }
+    }
+
+    // Sets the bit of every slot overlapping a booking at time
+    private static void occupy(SlotGrid grid, long[] bits, LocalTime time) {
+        int start = minuteOf(time);
+        int end = start + grid.slotMinutes();
+        for (int slot = grid.firstAtOrAfter(start - grid.slotMinutes() + 1);
+             slot < grid.size() && grid.startMinute(slot) < end; slot++) {
+            bits[slot >>> 6] |= 1L << slot;
+        }
+    }
+
+    /**
+     * True if a booking at time, made on grid old, would be cut short on
+     * grid now: its old length reaches into a slot of now that it no longer
+     * overlaps, so that slot would be offered while the patient is still in.
+     */
+    public static boolean wouldCutShort(SlotGrid old, SlotGrid now, LocalTime time) {
+        int start = minuteOf(time);
+        int oldEnd = start + old.slotMinutes();
+        int newEnd = start + now.slotMinutes();
+        for (int slot = now.firstAtOrAfter(start - now.slotMinutes() + 1);
+             slot < now.size() && now.startMinute(slot) < oldEnd; slot++) {
+            if (now.startMinute(slot) >= newEnd) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int minuteOf(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    // ---------- Queries ----------
+
+    /** Free slot start times for a doctor-day; past slots are left out when date is today. */
+    public List<LocalTime> freeSlots(String doctorId, LocalDate date, LocalDateTime now) {
+        DayBits day = dayBits(doctorId, date);
+        SlotGrid grid = day != null ? day.grid : gridFor(doctorId, date);
+        long[] bits = day != null ? day.bits : null;
+        int from = firstBookable(grid, date, now);
+        List<LocalTime> result = new ArrayList<>(grid.size());
+        for (int w = 0; w < grid.wordCount(); w++) {
+            long free = freeWord(grid, bits, w, from);
+            while (free != 0) {
+                int slot = (w << 6) + Long.numberOfTrailingZeros(free);
+                result.add(grid.time(slot));
+                free &= free - 1;
+            }
+        }
+        return result;
+    }
+
+    /** The first n free slots for a doctor between two dates (inclusive). */
+    public List<LocalDateTime> firstFree(String doctorId, LocalDate from, LocalDate to,
+                                         int n, LocalDateTime now) {
+        return firstFree(doctorId, from, to, n, now, null, null);
+    }
+
+    /**
+     * As above, but also stops at the first slot later than cutoff (minutes
+     * since the epoch, see slotKey), which other searchers may lower while
+     * this one runs, and skips slots held in holds. Either may be null.
+     */
+    public List<LocalDateTime> firstFree(String doctorId, LocalDate from, LocalDate to,
+                                         int n, LocalDateTime now, AtomicLong cutoff, SlotHolds holds) {
+        List<LocalDateTime> result = new ArrayList<>();
+        LocalDate today = now.toLocalDate();
+        LocalDate date = from.isBefore(today) ? today : from;
+        for (; !date.isAfter(to) && result.size() < n; date = date.plusDays(1)) {
+            long dayKey = date.toEpochDay() * 1440;
+            if (cutoff != null && dayKey > cutoff.get()) {
+                break;
+            }
+            DayBits day = dayBits(doctorId, date);
+            SlotGrid grid = day != null ? day.grid : gridFor(doctorId, date);
+            long[] bits = day != null ? day.bits : null;
+            int start = firstBookable(grid, date, now);
+            for (int w = 0; w < grid.wordCount() && result.size() < n; w++) {
+                long free = freeWord(grid, bits, w, start);
+                while (free != 0 && result.size() < n) {
+                    int slot = (w << 6) + Long.numberOfTrailingZeros(free);
+                    if (cutoff != null && dayKey + grid.startMinute(slot) > cutoff.get()) {
+                        return result;
+                    }
+                    if (holds == null || !holds.isHeldByOther(doctorId, date, grid.time(slot), null)) {
+                        result.add(LocalDateTime.of(date, grid.time(slot)));
+                    }
+                    free &= free - 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Orders slots by start: minutes since the epoch. */
+    public static long slotKey(LocalDate date, LocalTime time) {
+        return date.toEpochDay() * 1440 + time.getHour() * 60 + time.getMinute();
+    }
+
+    /**
+     * The doctors (from the given ids) with a free slot starting exactly at
+     * date/time that is not held in holds (may be null).
+     */
+    public List<String> doctorsFreeAt(Collection<String> doctorIds, LocalDate date,
+                                      LocalTime time, LocalDateTime now, SlotHolds holds) {
+        List<String> result = new ArrayList<>();
+        if (LocalDateTime.of(date, time).isBefore(now)) {
+            return result;
+        }
+        for (String doctorId : doctorIds) {
+            DayBits day = dayBits(doctorId, date);
+            SlotGrid grid = day != null ? day.grid : gridFor(doctorId, date);
+            int slot = grid.indexOf(time);
+            if (slot < 0) {
+                continue;
+            }
+            if ((day == null || (day.bits[slot >>> 6] & (1L << slot)) == 0)
+                    && (holds == null || !holds.isHeldByOther(doctorId, date, time, null))) {
+                result.add(doctorId);
+            }
+        }
+        return result;
+    }
+
+    // ---------- Helpers ----------
+
+    private DayBits dayBits(String doctorId, LocalDate date) {
+        ConcurrentMap<Long, DayBits> days = booked.get(doctorId);
+        return days == null ? null : days.get(date.toEpochDay());
+    }
+
+    // Free bits of one word: in the grid, not booked, not before slot `from`
+    private static long freeWord(SlotGrid grid, long[] bits, int word, int from) {
+        long free = grid.allMask(word);
+        if (bits != null && word < bits.length) {
+            free &= ~bits[word];
+        }
+        int firstBit = from - (word << 6);
+        if (firstBit >= 64) {
+            return 0;
+        }
+        if (firstBit > 0) {
+            free &= -1L << firstBit;
+        }
+        return free;
+    }
+
+    // First slot whose start is not in the past (0 unless date is today)
+    private static int firstBookable(SlotGrid grid, LocalDate date, LocalDateTime now) {
+        if (!date.equals(now.toLocalDate())) {
+            return 0;
+        }
+        long nanosOfDay = now.toLocalTime().toNanoOfDay();
+        long nanosPerMinute = 60_000_000_000L;
+        int minute = (int) ((nanosOfDay + nanosPerMinute - 1) / nanosPerMinute);
+        return grid.firstAtOrAfter(minute);
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long w : bits) {
+            if (w != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,32 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/** A free slot with a particular doctor, as returned by slot searches. */
+public class AvailableSlot {
+    private String doctorId;
+    private LocalDate date;
+    private LocalTime time;
+
+    public AvailableSlot(String doctorId, LocalDate date, LocalTime time) {
+        this.doctorId = doctorId;
+        this.date = date;
+        this.time = time;
+    }
+
+    public String getDoctorId() {
+        return doctorId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public LocalTime getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return date.toString() + " " + time.toString() + " [Doctor " + doctorId + "]";
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares booking N appointments one scheduleAppointment call at a time
+ * against one scheduleAppointments batch. Each run gets a fresh temporary
+ * data directory, so the real data files are never touched.
+ *
+ * Usage: java BatchBookingBenchmark [count]   (default 5000)
+ */
+public class BatchBookingBenchmark {
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        List<BookingRequest> requests = makeRequests(count);
+
+        // warm up both paths on a small batch first
+        runPerCall(makeRequests(200));
+        runBatch(makeRequests(200));
+
+        long perCall = runPerCall(requests);
+        long batch = runBatch(requests);
+
+        System.out.println("Booked " + count + " appointments");
+        System.out.printf("  per-call: %8.1f ms (%.0f bookings/s)%n", perCall / 1e6, count / (perCall / 1e9));
+        System.out.printf("  batch:    %8.1f ms (%.0f bookings/s)%n", batch / 1e6, count / (batch / 1e9));
+        System.out.printf("  speedup:  %8.1fx%n", (double) perCall / batch);
+    }
+
+    // Spread requests over the default doctors' grid, day after day from tomorrow
+    private static List<BookingRequest> makeRequests(int count) {
+        String[] doctors = {"D100", "D101", "D102"};
+        SlotGrid grid = SlotGrid.DEFAULT;
+        List<BookingRequest> result = new ArrayList<>(count);
+        LocalDate date = LocalDate.now().plusDays(1);
+        int i = 0;
+        while (result.size() < count) {
+            int slot = i % grid.size();
+            int doctor = (i / grid.size()) % doctors.length;
+            LocalTime time = grid.time(slot);
+            result.add(new BookingRequest(doctors[doctor], date, time, i % 2 == 0 ? "P100" : "P101"));
+            i++;
+            if (i % (grid.size() * doctors.length) == 0) {
+                date = date.plusDays(1);
+            }
+        }
+        return result;
+    }
+
+    private static long runPerCall(List<BookingRequest> requests) throws IOException {
+        Path dir = Files.createTempDirectory("clinicflow-bench");
+        try {
+            AppointmentManager manager = new AppointmentManager(dir.toFile());
+            long start = System.nanoTime();
+            for (BookingRequest r : requests) {
+                if (!manager.scheduleAppointment(r.getDoctorId(), r.getDate(), r.getTime(), r.getPatientId())) {
+                    throw new IllegalStateException("Per-call booking failed: " + r);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            manager.close();
+            return elapsed;
+        } finally {
+            BenchmarkFiles.deleteAll(dir);
+        }
+    }
+
+    private static long runBatch(List<BookingRequest> requests) throws IOException {
+        Path dir = Files.createTempDirectory("clinicflow-bench");
+        try {
+            AppointmentManager manager = new AppointmentManager(dir.toFile());
+            long start = System.nanoTime();
+            List<BookingResult> results = manager.scheduleAppointments(requests);
+            long elapsed = System.nanoTime() - start;
+            for (BookingResult r : results) {
+                if (!r.isBooked()) {
+                    throw new IllegalStateException("Batch booking failed: " + r);
+                }
+            }
+            manager.close();
+            return elapsed;
+        } finally {
+            BenchmarkFiles.deleteAll(dir);
+        }
+    }
+}
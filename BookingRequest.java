@@ -0,0 +1,51 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/** One appointment to book as part of a batch. */
+public class BookingRequest {
+    private String doctorId;
+    private LocalDate date;
+    private LocalTime time;
+    private String patientId;
+    private SlotHolds.Hold hold;
+
+    public BookingRequest(String doctorId, LocalDate date, LocalTime time, String patientId) {
+        this(doctorId, date, time, patientId, null);
+    }
+
+    // hold, if not null, is this desk's hold on the slot (see AppointmentManager.holdSlot)
+    public BookingRequest(String doctorId, LocalDate date, LocalTime time, String patientId,
+                          SlotHolds.Hold hold) {
+        this.doctorId = doctorId;
+        this.date = date;
+        this.time = time;
+        this.patientId = patientId;
+        this.hold = hold;
+    }
+
+    public String getDoctorId() {
+        return doctorId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public LocalTime getTime() {
+        return time;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public SlotHolds.Hold getHold() {
+        return hold;
+    }
+
+    @Override
+    public String toString() {
+        return date.toString() + " " + time.toString()
+                + " [Doctor " + doctorId + ", Patient " + patientId + "]";
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.concurrent.CompletableFuture;
+
+/** Outcome of one booking request, alone or in a batch. */
+public class BookingResult {
+
+    public enum Status {
+        BOOKED,             // booked; getAppointment() has the new appointment
+        UNKNOWN_PATIENT,
+        IN_PAST,
+        CONFLICT,           // doctor already booked at that time
+        HELD,               // another desk holds that time (see AppointmentManager.holdSlot)
+        DUPLICATE_IN_BATCH, // an earlier request in the batch takes the same slot
+        NOT_APPLIED         // valid, but the batch was rejected because of other items
+    }
+
+    private BookingRequest request;
+    private Status status;
+    private Appointment appointment;
+    private CompletableFuture<Boolean> durable;
+
+    public BookingResult(BookingRequest request, Status status, Appointment appointment) {
+        this(request, status, appointment, CompletableFuture.completedFuture(false));
+    }
+
+    public BookingResult(BookingRequest request, Status status, Appointment appointment,
+                         CompletableFuture<Boolean> durable) {
+        this.request = request;
+        this.status = status;
+        this.appointment = appointment;
+        this.durable = durable;
+    }
+
+    public BookingRequest getRequest() {
+        return request;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isBooked() {
+        return status == Status.BOOKED;
+    }
+
+    /** The booked appointment, or null if this request was not booked. */
+    public Appointment getAppointment() {
+        return appointment;
+    }
+
+    /**
+     * Completes with true once the booking is on disk, or with false if
+     * it could not be saved. Already false if nothing was booked.
+     */
+    public CompletableFuture<Boolean> whenDurable() {
+        return durable;
+    }
+
+    @Override
+    public String toString() {
+        return status + " " + request;
+    }
+}
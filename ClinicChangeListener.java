@@ -0,0 +1,18 @@
+/**
+ * Hears about changes made through an AppointmentManager, right after
+ * each one is applied in memory (before it is necessarily on disk).
+ *
+ * Called on the thread that made the change, so implementations should
+ * be quick; Swing code hands its work to the event thread.
+ */
+public interface ClinicChangeListener {
+
+    default void appointmentBooked(Appointment appt) {
+    }
+
+    default void appointmentCancelled(Appointment appt) {
+    }
+
+    default void patientAdded(Patient patient) {
+    }
+}
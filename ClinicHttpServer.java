@@ -0,0 +1,408 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP/JSON front end for AppointmentManager, for the booking portal and
+ * kiosks. Built on the JDK's com.sun.net.httpserver, with no other
+ * dependencies.
+ *
+ *   POST   /api/login                {username, password} -> {token}
+ *   GET    /api/doctors
+ *   GET    /api/patients?q=&limit=   type-ahead search
+ *   GET    /api/patients/{id}
+ *   POST   /api/patients             {name, contact}
+ *   GET    /api/availability?doctorId=&date=
+ *   GET    /api/appointments?doctorId=&date=
+ *   POST   /api/appointments         {doctorId, date, time, patientId}
+ *   DELETE /api/appointments/{id}
+ *   GET    /api/metrics              the manager's metrics as text
+ *
+ * Every call except login needs "Authorization: Bearer <token>". A token
+ * lapses after clinicflow.http.sessionIdleSeconds (default 1800) without a
+ * call, and the client gets 401 until it logs in again. A booking
+ * must name one of the doctor's slot times for that day (HH:mm). A booking
+ * or cancellation is answered once it is on disk; a booking the journal
+ * could not save is answered 202 with its appointment and status
+ * "accepted, not yet saved".
+ *
+ * Each request runs on its own virtual thread when the JVM has them
+ * (Java 21+). Otherwise it runs on an unbounded cached pool. Either way a
+ * request that waits for the disk never holds up the others.
+ *
+ * Usage: java ClinicHttpServer [port] [dataDir]   (default 8080, working directory)
+ */
+public class ClinicHttpServer {
+
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final AppointmentManager manager;
+    private final HttpServer server;
+    private final ExecutorService executor = newThreadPerTaskExecutor();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>(); // by token
+    private final long sessionIdleNanos = TimeUnit.SECONDS.toNanos(
+            Long.getLong("clinicflow.http.sessionIdleSeconds", 1800L));
+
+    // A logged-in user; lastSeen moves on with every call
+    private static final class Session {
+        final String user;
+        volatile long lastSeen; // System.nanoTime()
+
+        Session(String user, long now) {
+            this.user = user;
+            this.lastSeen = now;
+        }
+    }
+
+    public ClinicHttpServer(AppointmentManager manager, int port) throws IOException {
+        this.manager = manager;
+        // small JSON answers would otherwise wait ~40 ms on Nagle and delayed ACKs;
+        // read once when the JDK server's config loads, so set it before create()
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/api/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * One new thread per task: virtual threads where the JVM has them
+     * (looked up reflectively, as the code also builds for Java 17), else a
+     * cached pool of platform threads.
+     */
+    public static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /** The port actually bound (useful when started on port 0). */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    // ---------- Routing ----------
+
+    // Thrown by a handler to answer with an error status and message
+    private static class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String method = ex.getRequestMethod();
+            String[] path = ex.getRequestURI().getPath().substring("/api/".length()).split("/");
+            String resource = path[0];
+            String id = path.length > 1 ? URLDecoder.decode(path[1], StandardCharsets.UTF_8) : null;
+
+            if (resource.equals("login") && method.equals("POST")) {
+                login(ex);
+                return;
+            }
+            requireSession(ex);
+            switch (method + " " + resource + (id == null ? "" : "/{id}")) {
+                case "GET doctors":
+                    doctors(ex);
+                    break;
+                case "GET patients":
+                    searchPatients(ex);
+                    break;
+                case "GET patients/{id}":
+                    patient(ex, id);
+                    break;
+                case "POST patients":
+                    addPatient(ex);
+                    break;
+                case "GET availability":
+                    availability(ex);
+                    break;
+                case "GET appointments":
+                    appointments(ex);
+                    break;
+                case "POST appointments":
+                    book(ex);
+                    break;
+                case "DELETE appointments/{id}":
+                    cancel(ex, id);
+                    break;
+                case "GET metrics":
+                    send(ex, 200, "text/plain; charset=utf-8", manager.getMetrics().dump());
+                    break;
+                default:
+                    throw new HttpError(404, "No such endpoint: " + method + " " + ex.getRequestURI().getPath());
+            }
+        } catch (HttpError e) {
+            sendJson(ex, e.status, new Json.Obj().put("error", e.getMessage()).toString());
+        } catch (IllegalArgumentException e) {
+            sendJson(ex, 400, new Json.Obj().put("error", e.getMessage()).toString());
+        } catch (RuntimeException e) {
+            System.err.println("HTTP " + ex.getRequestURI() + " failed: " + e);
+            sendJson(ex, 500, new Json.Obj().put("error", "Internal error").toString());
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void requireSession(HttpExchange ex) {
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        String token = auth != null && auth.startsWith("Bearer ") ? auth.substring(7).trim() : null;
+        Session session = token == null ? null : sessions.get(token);
+        long now = System.nanoTime();
+        if (session == null) {
+            throw new HttpError(401, "Log in first (POST /api/login)");
+        }
+        if (now - session.lastSeen > sessionIdleNanos) {
+            sessions.remove(token, session);
+            throw new HttpError(401, "Session expired, log in again (POST /api/login)");
+        }
+        session.lastSeen = now;
+    }
+
+    // ---------- Handlers ----------
+
+    private void login(HttpExchange ex) throws IOException {
+        Map<String, String> body = body(ex);
+        String user = body.get("username");
+        if (user == null || !manager.login(user, body.get("password"))) {
+            throw new HttpError(401, "Invalid username or password");
+        }
+        long now = System.nanoTime();
+        // tokens that were never used again are dropped here rather than by a timer
+        sessions.values().removeIf(s -> now - s.lastSeen > sessionIdleNanos);
+        String token = UUID.randomUUID().toString();
+        sessions.put(token, new Session(user, now));
+        sendJson(ex, 200, new Json.Obj().put("token", token).toString());
+    }
+
+    private void doctors(HttpExchange ex) throws IOException {
+        List<String> items = new ArrayList<>();
+        for (Doctor d : manager.getAllDoctors()) {
+            items.add(new Json.Obj().put("id", d.getId()).put("name", d.getName())
+                    .put("specialty", d.getSpecialty()).toString());
+        }
+        sendJson(ex, 200, Json.array(items));
+    }
+
+    private void searchPatients(HttpExchange ex) throws IOException {
+        Map<String, String> q = query(ex);
+        int limit = q.containsKey("limit") ? Integer.parseInt(q.get("limit")) : 20;
+        List<String> items = new ArrayList<>();
+        for (Patient p : manager.searchPatients(q.getOrDefault("q", ""), Math.min(limit, 1000))) {
+            items.add(patientJson(p));
+        }
+        sendJson(ex, 200, Json.array(items));
+    }
+
+    private void patient(HttpExchange ex, String id) throws IOException {
+        Patient p = manager.getPatient(id);
+        if (p == null) {
+            throw new HttpError(404, "No patient " + id);
+        }
+        sendJson(ex, 200, patientJson(p));
+    }
+
+    private void addPatient(HttpExchange ex) throws IOException {
+        Map<String, String> body = body(ex);
+        String name = required(body, "name").trim();
+        String contact = required(body, "contact").trim();
+        Patient p = manager.addPatient(name, contact);
+        if (p == null) {
+            throw new HttpError(400, "name and contact must be non-empty and contain no ';' or line breaks");
+        }
+        sendJson(ex, 201, patientJson(p));
+    }
+
+    private void availability(HttpExchange ex) throws IOException {
+        Map<String, String> q = query(ex);
+        String doctorId = required(q, "doctorId");
+        LocalDate date = date(required(q, "date"));
+        List<String> times = new ArrayList<>();
+        for (LocalTime t : manager.getAvailableTimeSlots(doctorId, date)) {
+            times.add(Json.quote(t.toString()));
+        }
+        sendJson(ex, 200, new Json.Obj().put("doctorId", doctorId).put("date", date.toString())
+                .raw("times", Json.array(times)).toString());
+    }
+
+    private void appointments(HttpExchange ex) throws IOException {
+        Map<String, String> q = query(ex);
+        String doctorId = required(q, "doctorId");
+        LocalDate date = date(required(q, "date"));
+        List<String> items = new ArrayList<>();
+        for (Appointment a : manager.getAppointmentsFor(doctorId, date)) {
+            items.add(appointmentJson(a));
+        }
+        sendJson(ex, 200, Json.array(items));
+    }
+
+    private void book(HttpExchange ex) throws IOException {
+        Map<String, String> body = body(ex);
+        BookingRequest request = new BookingRequest(required(body, "doctorId"), date(required(body, "date")),
+                time(required(body, "time")), required(body, "patientId"));
+        if (manager.getDoctor(request.getDoctorId()) == null) {
+            throw new HttpError(404, "No doctor " + request.getDoctorId());
+        }
+        // only the doctor's own slot times; a closed day has none
+        if (manager.getSchedule(request.getDoctorId()).gridFor(request.getDate()).indexOf(request.getTime()) < 0) {
+            throw new HttpError(400, "No slot starts at " + request.getTime() + " on " + request.getDate()
+                    + " (see /api/availability)");
+        }
+        BookingResult result = manager.book(request);
+        switch (result.getStatus()) {
+            case BOOKED:
+                if (!result.whenDurable().join()) {
+                    // the booking stands in memory, so a retry would only
+                    // conflict with it; hand out its id and say it is unsaved
+                    sendJson(ex, 202, new Json.Obj().put("status", "accepted, not yet saved")
+                            .raw("appointment", appointmentJson(result.getAppointment())).toString());
+                    break;
+                }
+                sendJson(ex, 201, appointmentJson(result.getAppointment()));
+                break;
+            case CONFLICT:
+                throw new HttpError(409, "That time is already booked");
+            case HELD:
+                throw new HttpError(409, "That time is being booked at another desk");
+            case UNKNOWN_PATIENT:
+                throw new HttpError(404, "No patient " + request.getPatientId());
+            default:
+                throw new HttpError(422, "Not booked: " + result.getStatus());
+        }
+    }
+
+    private void cancel(HttpExchange ex, String id) throws IOException {
+        int appointmentId;
+        try {
+            appointmentId = Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Bad appointment id " + id);
+        }
+        if (!manager.cancelAppointment(appointmentId)) {
+            throw new HttpError(404, "No appointment " + id);
+        }
+        sendJson(ex, 200, new Json.Obj().put("cancelled", appointmentId).toString());
+    }
+
+    // ---------- Helpers ----------
+
+    private static String patientJson(Patient p) {
+        return new Json.Obj().put("id", p.getId()).put("name", p.getName())
+                .put("contact", p.getContact()).toString();
+    }
+
+    private static String appointmentJson(Appointment a) {
+        return new Json.Obj().put("id", a.getId()).put("doctorId", a.getDoctorId())
+                .put("patientId", a.getPatientId()).put("date", a.getDate().toString())
+                .put("time", a.getTime().toString()).toString();
+    }
+
+    private static String required(Map<String, String> values, String name) {
+        String v = values.get(name);
+        if (v == null) {
+            throw new HttpError(400, "Missing " + name);
+        }
+        return v;
+    }
+
+    private static LocalDate date(String s) {
+        try {
+            return LocalDate.parse(s);
+        } catch (DateTimeParseException e) {
+            throw new HttpError(400, "Bad date " + s + " (use yyyy-MM-dd)");
+        }
+    }
+
+    private static LocalTime time(String s) {
+        try {
+            return LocalTime.parse(s, TIME_FMT);
+        } catch (DateTimeParseException e) {
+            throw new HttpError(400, "Bad time " + s + " (use HH:mm)");
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> result = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return result;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                result.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, String> body(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] bytes = in.readNBytes(64 * 1024);
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void sendJson(HttpExchange ex, int status, String json) throws IOException {
+        send(ex, status, "application/json; charset=utf-8", json);
+    }
+
+    private static void send(HttpExchange ex, int status, String contentType, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        AppointmentManager manager = new AppointmentManager(args.length > 1 ? new File(args[1]) : null);
+        ClinicHttpServer server = new ClinicHttpServer(manager, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            manager.close();
+        }));
+        server.start();
+        System.out.println("ClinicFlow API listening on port " + server.getPort());
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.*;
+
+/**
+ * Timers, counters and size gauges for one AppointmentManager.
+ *
+ * A timer is a LatencyHistogram. Callers take System.nanoTime() before the
+ * work and pass it to record() after it. Counters are LongAdders. Nothing
+ * takes a lock on the recording path, so the cost per timed call is two
+ * clock reads and a few uncontended atomic adds. Gauges are read only when
+ * someone looks.
+ *
+ * The numbers are published as a JMX MBean, one attribute per value
+ * (timers as NAME.count, NAME.p50Micros, NAME.p99Micros, and so on).
+ * dump() prints the same numbers as text. startDump() prints them
+ * periodically.
+ */
+public class ClinicMetrics implements DynamicMBean {
+
+    /** A named latency histogram. */
+    public static class Timer {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        /** Records the time since startNanos (a System.nanoTime() value). */
+        public void record(long startNanos) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+
+        public LatencyHistogram histogram() {
+            return histogram;
+        }
+    }
+
+    private static final String[] TIMER_FIELDS = {"count", "meanMicros", "p50Micros", "p90Micros",
+            "p99Micros", "p999Micros", "maxMicros"};
+
+    // sorted by name, so the MBean and the dump list related metrics together
+    private final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    private ObjectName registeredAs;
+
+    // which instance holds each name on the platform server; guards (un)registering
+    private static final Map<ObjectName, ClinicMetrics> OWNERS = new HashMap<>();
+    private ScheduledExecutorService dumper;
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /** A value computed on read, such as a collection size. */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /** Clears timers and counters; gauges are live values and stay. */
+    public void reset() {
+        for (Timer t : timers.values()) {
+            t.histogram.reset();
+        }
+        for (LongAdder c : counters.values()) {
+            c.reset();
+        }
+    }
+
+    // ---------- Text dump ----------
+
+    /** Every metric as text, one per line; timers in microseconds. */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Timer> e : timers.entrySet()) {
+            if (e.getValue().histogram.count() > 0) {
+                sb.append(String.format("%-36s %s%n", e.getKey(), e.getValue().histogram.summary()));
+            }
+        }
+        for (Map.Entry<String, LongAdder> e : counters.entrySet()) {
+            sb.append(String.format("%-36s %d%n", e.getKey(), e.getValue().sum()));
+        }
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            sb.append(String.format("%-36s %d%n", e.getKey(), e.getValue().getAsLong()));
+        }
+        return sb.toString();
+    }
+
+    /** Prints dump() to out every period seconds until stopDump(). */
+    public synchronized void startDump(long seconds, PrintStream out) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> out.print("---------- metrics ----------\n" + dump()),
+                seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    // ---------- JMX ----------
+
+    /**
+     * Registers as clinicflow:type=Metrics,name=NAME with the platform MBean
+     * server, replacing an earlier registration under that name. Failures are
+     * reported and otherwise ignored.
+     */
+    public synchronized void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("clinicflow:type=Metrics,name=" + ObjectName.quote(name));
+            synchronized (OWNERS) {
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(this, objectName);
+                OWNERS.put(objectName, this);
+            }
+            registeredAs = objectName;
+        } catch (JMException e) {
+            System.err.println("Could not register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    /** Unregisters, unless another instance has since taken the name over. */
+    public synchronized void unregister() {
+        if (registeredAs == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            synchronized (OWNERS) {
+                if (OWNERS.remove(registeredAs, this) && server.isRegistered(registeredAs)) {
+                    server.unregisterMBean(registeredAs);
+                }
+            }
+        } catch (JMException e) {
+            System.err.println("Could not unregister metrics MBean: " + e.getMessage());
+        }
+        registeredAs = null;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        LongAdder counter = counters.get(attribute);
+        if (counter != null) {
+            return counter.sum();
+        }
+        LongSupplier gauge = gauges.get(attribute);
+        if (gauge != null) {
+            return gauge.getAsLong();
+        }
+        int dot = attribute.lastIndexOf('.');
+        Timer timer = dot < 0 ? null : timers.get(attribute.substring(0, dot));
+        if (timer != null) {
+            LatencyHistogram h = timer.histogram;
+            switch (attribute.substring(dot + 1)) {
+                case "count":
+                    return h.count();
+                case "meanMicros":
+                    return h.mean() / 1e3;
+                case "p50Micros":
+                    return h.percentile(50) / 1e3;
+                case "p90Micros":
+                    return h.percentile(90) / 1e3;
+                case "p99Micros":
+                    return h.percentile(99) / 1e3;
+                case "p999Micros":
+                    return h.percentile(99.9) / 1e3;
+                case "maxMicros":
+                    return h.max() / 1e3;
+                default:
+                    break;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException e) {
+                // left out, as the DynamicMBean contract allows
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("reset".equals(actionName)) {
+            reset();
+            return null;
+        }
+        if ("dump".equals(actionName)) {
+            return dump();
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    // Rebuilt on each call, since timers and counters appear as they are first used
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : timers.keySet()) {
+            for (String field : TIMER_FIELDS) {
+                String type = field.equals("count") ? "long" : "double";
+                attributes.add(new MBeanAttributeInfo(name + "." + field, type,
+                        name + " " + field, true, false, false));
+            }
+        }
+        for (String name : counters.keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, "long", "count of " + name, true, false, false));
+        }
+        for (String name : gauges.keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, "long", "current " + name, true, false, false));
+        }
+        MBeanOperationInfo[] operations = {
+                new MBeanOperationInfo("reset", "Clears timers and counters",
+                        new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION),
+                new MBeanOperationInfo("dump", "Every metric as text",
+                        new MBeanParameterInfo[0], "java.lang.String", MBeanOperationInfo.INFO)
+        };
+        return new MBeanInfo(getClass().getName(), "ClinicFlow appointment manager metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, operations, null);
+    }
+}
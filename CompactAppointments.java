@@ -0,0 +1,225 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * A read-only set of appointments packed into primitive columns, for
+ * history that is read often and never changed.
+ *
+ * A row is an id, a patient ordinal, an epoch day and a minute of the
+ * day: 14 bytes, against well over 100 for an Appointment with its
+ * LocalDate and LocalTime. The columns lie one after another in a single
+ * ByteBuffer, which can be direct: then the rows live outside the Java
+ * heap and the garbage collector never scans them. Only the small doctor
+ * index and the id tables stay on the heap (the id Strings themselves are
+ * shared with the caller's interner). An Appointment is only built when a
+ * row is handed out, and shares its LocalDate and LocalTime with the other
+ * views.
+ *
+ * Rows are sorted by doctor, date, time and id, so a doctor's rows are one
+ * range and a date range within it is a binary search. Immutable; safe to
+ * read from any thread (only absolute buffer reads are used).
+ */
+public final class CompactAppointments {
+
+    private static final Comparator<Appointment> BY_DATE_TIME = Comparator
+            .comparing(Appointment::getDate)
+            .thenComparing(Appointment::getTime)
+            .thenComparingInt(Appointment::getId);
+
+    private static final int ROW_BYTES = 14;
+
+    // shared by every view handed out; LocalTime is immutable
+    private static final LocalTime[] TIMES = new LocalTime[24 * 60];
+
+    static {
+        for (int m = 0; m < TIMES.length; m++) {
+            TIMES[m] = LocalTime.of(m / 60, m % 60);
+        }
+    }
+
+    // columns, each n values long: int id, int patient ordinal, int epoch day, short minute
+    private final ByteBuffer rows;
+    private final int size;
+    private final int patientsAt;
+    private final int daysAt;
+    private final int minutesAt;
+    private final String[] doctorIds;   // sorted, so ordinal order is doctor order
+    private final int[] doctorStart;    // rows of doctor d are [doctorStart[d], doctorStart[d + 1])
+    private final String[] patientIds;
+    private final long firstDay;
+    private final LocalDate[] dates;    // one per day from firstDay through the last day
+
+    private CompactAppointments(ByteBuffer rows, int size, String[] doctorIds, int[] doctorStart,
+                                String[] patientIds, long firstDay, LocalDate[] dates) {
+        this.rows = rows;
+        this.size = size;
+        this.patientsAt = 4 * size;
+        this.daysAt = 8 * size;
+        this.minutesAt = 12 * size;
+        this.doctorIds = doctorIds;
+        this.doctorStart = doctorStart;
+        this.patientIds = patientIds;
+        this.firstDay = firstDay;
+        this.dates = dates;
+    }
+
+    /** Packs appointments on the heap; the collection is not changed or kept. */
+    public static CompactAppointments of(Collection<Appointment> appointments) {
+        return of(appointments, false);
+    }
+
+    /** As above, with the rows in a direct (off-heap) buffer if offHeap. */
+    public static CompactAppointments of(Collection<Appointment> appointments, boolean offHeap) {
+        // Group by doctor with a stable counting sort, then sort each doctor's
+        // rows by date and time. Archive months arrive in date/time order, so
+        // that second sort is usually just a check.
+        Map<String, Integer> rank = new HashMap<>();
+        for (Appointment appt : appointments) {
+            rank.putIfAbsent(appt.getDoctorId(), 0);
+        }
+        String[] doctorIds = rank.keySet().toArray(new String[0]);
+        Arrays.sort(doctorIds);
+        for (int d = 0; d < doctorIds.length; d++) {
+            rank.put(doctorIds[d], d);
+        }
+        int n = appointments.size();
+        int[] starts = new int[doctorIds.length + 1];
+        for (Appointment appt : appointments) {
+            starts[rank.get(appt.getDoctorId()) + 1]++;
+        }
+        for (int d = 0; d < doctorIds.length; d++) {
+            starts[d + 1] += starts[d];
+        }
+        Appointment[] sorted = new Appointment[n];
+        int[] next = Arrays.copyOf(starts, doctorIds.length);
+        for (Appointment appt : appointments) {
+            sorted[next[rank.get(appt.getDoctorId())]++] = appt;
+        }
+        for (int d = 0; d < doctorIds.length; d++) {
+            if (!isSorted(sorted, starts[d], starts[d + 1])) {
+                Arrays.sort(sorted, starts[d], starts[d + 1], BY_DATE_TIME);
+            }
+        }
+
+        ByteBuffer rows = (offHeap ? ByteBuffer.allocateDirect(n * ROW_BYTES) : ByteBuffer.allocate(n * ROW_BYTES))
+                .order(ByteOrder.nativeOrder());
+        IdInterner patientIds = new IdInterner();
+        long firstDay = Long.MAX_VALUE;
+        long lastDay = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            Appointment appt = sorted[i];
+            rows.putInt(4 * i, appt.getId());
+            rows.putInt(4 * (n + i), patientIds.ordinalOf(appt.getPatientId()));
+            long day = appt.getDate().toEpochDay();
+            firstDay = Math.min(firstDay, day);
+            lastDay = Math.max(lastDay, day);
+            rows.putInt(4 * (2 * n + i), (int) day);
+            rows.putShort(12 * n + 2 * i, (short) (appt.getTime().getHour() * 60 + appt.getTime().getMinute()));
+        }
+
+        String[] patientTable = new String[patientIds.size()];
+        for (int p = 0; p < patientTable.length; p++) {
+            patientTable[p] = patientIds.get(p);
+        }
+        LocalDate[] dates = new LocalDate[n == 0 ? 0 : (int) (lastDay - firstDay + 1)];
+        for (int d = 0; d < dates.length; d++) {
+            dates[d] = LocalDate.ofEpochDay(firstDay + d);
+        }
+        return new CompactAppointments(rows, n, doctorIds, starts, patientTable, firstDay, dates);
+    }
+
+    private static boolean isSorted(Appointment[] a, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            if (BY_DATE_TIME.compare(a[i - 1], a[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** True if the rows are outside the Java heap. */
+    public boolean isOffHeap() {
+        return rows.isDirect();
+    }
+
+    /** Bytes taken by the rows (off the heap if isOffHeap()). */
+    public long rowBytes() {
+        return (long) ROW_BYTES * size;
+    }
+
+    /** Approximate heap taken by the index and id tables (not the shared id Strings). */
+    public long indexBytes() {
+        return 4L * doctorStart.length + 4L * (doctorIds.length + patientIds.length) + 28L * dates.length;
+    }
+
+    // ---------- Queries ----------
+
+    /** Appends the doctor's appointments between two dates (inclusive), sorted. */
+    public void forRange(String doctorId, LocalDate from, LocalDate to, List<Appointment> out) {
+        int d = Arrays.binarySearch(doctorIds, doctorId);
+        if (d < 0) {
+            return;
+        }
+        int end = doctorStart[d + 1];
+        long last = to.toEpochDay();
+        for (int i = firstOnOrAfter(doctorStart[d], end, from.toEpochDay()); i < end && day(i) <= last; i++) {
+            out.add(row(i, doctorId));
+        }
+    }
+
+    /** Appends all of the doctor's appointments, sorted. */
+    public void forDoctor(String doctorId, List<Appointment> out) {
+        int d = Arrays.binarySearch(doctorIds, doctorId);
+        if (d < 0) {
+            return;
+        }
+        for (int i = doctorStart[d]; i < doctorStart[d + 1]; i++) {
+            out.add(row(i, doctorId));
+        }
+    }
+
+    /** The appointment with this id, or null. Scans the id column. */
+    public Appointment get(int appointmentId) {
+        for (int i = 0; i < size; i++) {
+            if (rows.getInt(4 * i) == appointmentId) {
+                int d = 0;
+                while (doctorStart[d + 1] <= i) {
+                    d++;
+                }
+                return row(i, doctorIds[d]);
+            }
+        }
+        return null;
+    }
+
+    // first row in [from, to) on or after the day; days are sorted within a doctor
+    private int firstOnOrAfter(int from, int to, long epochDay) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (day(mid) < epochDay) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int day(int i) {
+        return rows.getInt(daysAt + 4 * i);
+    }
+
+    private Appointment row(int i, String doctorId) {
+        return new Appointment(rows.getInt(4 * i), doctorId, dates[(int) (day(i) - firstDay)],
+                TIMES[rows.getShort(minutesAt + 2 * i)], patientIds[rows.getInt(patientsAt + 4 * i)]);
+    }
+}
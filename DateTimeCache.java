@@ -0,0 +1,34 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Hands out shared LocalDate and LocalTime instances while loading, so a
+ * million rows on the same few hundred days don't each get their own
+ * objects. One LocalTime per minute of the day; dates live in a small
+ * direct-mapped table keyed by epoch day. Not thread-safe.
+ */
+public class DateTimeCache {
+
+    private final LocalTime[] times = new LocalTime[24 * 60];
+    private final LocalDate[] dates = new LocalDate[4096]; // power of two
+
+    public LocalDate date(long epochDay) {
+        int slot = (int) (epochDay & (dates.length - 1));
+        LocalDate cached = dates[slot];
+        if (cached != null && cached.toEpochDay() == epochDay) {
+            return cached;
+        }
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        dates[slot] = date;
+        return date;
+    }
+
+    public LocalTime time(int minuteOfDay) {
+        LocalTime t = times[minuteOfDay];
+        if (t == null) {
+            t = LocalTime.of(minuteOfDay / 60, minuteOfDay % 60);
+            times[minuteOfDay] = t;
+        }
+        return t;
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput and latency of the HTTP API under many concurrent clients.
+ *
+ * Each client logs in and then loops until time is up. Nine calls in ten
+ * ask for a doctor's free times on a day in the coming week; the rest
+ * book one of those times and cancel the booking again. Clients run
+ * closed-loop (a new call as soon as the last answer arrives), so the
+ * report shows the server's capacity at that concurrency.
+ *
+ * Without a URL the test starts its own server on a fresh temporary copy
+ * of a generated clinic (see WorkloadGenerator), so no real data is
+ * touched:
+ *   java HttpLoadTest [clients] [seconds] [url]   (default 200 clients, 20 s)
+ */
+public class HttpLoadTest {
+
+    private static final Pattern STRING = Pattern.compile("\"(id|token)\":\"([^\"]*)\"");
+    private static final Pattern TIME = Pattern.compile("\"(\\d\\d:\\d\\d)\"");
+    private static final Pattern NUMBER_ID = Pattern.compile("\"id\":(\\d+)");
+
+    private final HttpClient client;
+    private final String base;
+    private final LatencyHistogram queries = new LatencyHistogram();
+    private final LatencyHistogram bookings = new LatencyHistogram();
+    private final LatencyHistogram cancels = new LatencyHistogram();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    HttpLoadTest(String base, ExecutorService executor) {
+        this.base = base;
+        this.client = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(5)).build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        ExecutorService executor = ClinicHttpServer.newThreadPerTaskExecutor();
+        Path dir = null;
+        AppointmentManager manager = null;
+        ClinicHttpServer server = null;
+        String base;
+        if (args.length > 2) {
+            base = args[2];
+        } else {
+            dir = Files.createTempDirectory("clinicflow-http");
+            LocalDate today = LocalDate.now();
+            new WorkloadGenerator(50, 5000, today.minusDays(30), today.plusDays(30)).write(dir, 20_000, 42);
+            manager = new AppointmentManager(dir.toFile());
+            server = new ClinicHttpServer(manager, 0);
+            server.start();
+            base = "http://localhost:" + server.getPort();
+        }
+        try {
+            new HttpLoadTest(base, executor).run(clients, seconds, executor);
+        } finally {
+            if (server != null) {
+                server.stop();
+                manager.close();
+                BenchmarkFiles.deleteAll(dir);
+            }
+            executor.shutdown();
+        }
+    }
+
+    private void run(int clients, int seconds, ExecutorService executor) throws Exception {
+        String token = extract(STRING, post("/api/login", "{\"username\":\"admin\",\"password\":\"password\"}", null), 2);
+        List<String> doctors = all(STRING, get("/api/doctors", token));
+        List<String> patients = all(STRING, get("/api/patients?limit=500", token));
+        System.out.println("Running " + clients + " clients for " + seconds + " s against " + base
+                + " (" + doctors.size() + " doctors, " + patients.size() + " patients)");
+
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(clients);
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(c);
+            executor.execute(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        oneCall(random, token, doctors, patients);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long total = queries.count() + bookings.count() + cancels.count();
+        System.out.printf("%d requests in %.1f s: %.0f requests/s%n", total, elapsed, total / elapsed);
+        System.out.println("  availability " + queries.summary());
+        System.out.println("  book         " + bookings.summary());
+        System.out.println("  cancel       " + cancels.summary());
+        System.out.println("Booking conflicts: " + conflicts.sum() + ", errors: " + errors.sum());
+    }
+
+    private void oneCall(Random random, String token, List<String> doctors, List<String> patients) {
+        String doctor = doctors.get(random.nextInt(doctors.size()));
+        LocalDate day = LocalDate.now().plusDays(1 + random.nextInt(7));
+        try {
+            long t = System.nanoTime();
+            HttpResponse<String> free = get("/api/availability?doctorId=" + doctor + "&date=" + day, token);
+            queries.record(System.nanoTime() - t);
+            List<String> times = all(TIME, free);
+            if (random.nextInt(10) != 0 || times.isEmpty()) {
+                return;
+            }
+
+            String time = times.get(random.nextInt(times.size()));
+            String patient = patients.get(random.nextInt(patients.size()));
+            t = System.nanoTime();
+            HttpResponse<String> booked = post("/api/appointments", new Json.Obj().put("doctorId", doctor)
+                    .put("date", day.toString()).put("time", time).put("patientId", patient).toString(), token);
+            bookings.record(System.nanoTime() - t);
+            if (booked.statusCode() == 409) {
+                conflicts.increment();
+                return;
+            }
+            if (booked.statusCode() != 201) {
+                errors.increment();
+                return;
+            }
+
+            t = System.nanoTime();
+            HttpResponse<String> cancelled = send(HttpRequest.newBuilder(URI.create(base + "/api/appointments/"
+                    + extract(NUMBER_ID, booked, 1))).DELETE(), token);
+            cancels.record(System.nanoTime() - t);
+            if (cancelled.statusCode() != 200) {
+                errors.increment();
+            }
+        } catch (IOException | RuntimeException e) {
+            errors.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------- HTTP ----------
+
+    private HttpResponse<String> get(String path, String token) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(base + path)).GET(), token);
+    }
+
+    private HttpResponse<String> post(String path, String json, String token) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(base + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)), token);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request, String token) throws IOException, InterruptedException {
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return client.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String extract(Pattern pattern, HttpResponse<String> response, int group) {
+        Matcher m = pattern.matcher(response.body());
+        if (!m.find()) {
+            throw new IllegalStateException("Unexpected response " + response.statusCode() + ": " + response.body());
+        }
+        return m.group(group);
+    }
+
+    // Every match's last group, e.g. every id in a list
+    private static List<String> all(Pattern pattern, HttpResponse<String> response) {
+        List<String> result = new ArrayList<>();
+        Matcher m = pattern.matcher(response.body());
+        while (m.find()) {
+            result.add(m.group(m.groupCount()));
+        }
+        return result;
+    }
+}
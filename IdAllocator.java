@@ -0,0 +1,140 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out patient and appointment ids in constant time.
+ *
+ * High-water marks are restored once at load time (from ids.txt and from
+ * the ids seen in the data files), then ids come off AtomicIntegers so
+ * concurrent callers never collide. Ids are reserved in blocks: ids.txt
+ * records the end of the current block, so a restart skips past anything
+ * that may have been handed out and an id is never reused, even after the
+ * appointment that had it was cancelled and compacted away.
+ */
+public class IdAllocator {
+
+    private static final int BLOCK = 100;
+
+    private final Path file;
+
+    private final AtomicInteger nextAppointment = new AtomicInteger(1);
+    private final AtomicInteger nextPatient = new AtomicInteger(100);
+
+    // first id not yet covered by what is written in ids.txt
+    private volatile int reservedAppointment;
+    private volatile int reservedPatient;
+
+    public IdAllocator(String idFile) {
+        this.file = Paths.get(idFile);
+        load();
+    }
+
+    // ---------- Restore (load time only) ----------
+
+    public void observeAppointmentId(int id) {
+        nextAppointment.accumulateAndGet(id + 1, Math::max);
+    }
+
+    /** Patient ids look like P<number>; anything else is ignored. */
+    public void observePatientId(String id) {
+        if (id != null && id.startsWith("P")) {
+            try {
+                nextPatient.accumulateAndGet(Integer.parseInt(id.substring(1)) + 1, Math::max);
+            } catch (NumberFormatException ignore) {
+            }
+        }
+    }
+
+    // ---------- Allocation ----------
+
+    public int nextAppointmentId() {
+        int id = nextAppointment.getAndIncrement();
+        if (id >= reservedAppointment) {
+            reserve(id, true);
+        }
+        return id;
+    }
+
+    /** Reserves count consecutive appointment ids and returns the first. */
+    public int nextAppointmentIds(int count) {
+        int first = nextAppointment.getAndAdd(count);
+        int last = first + count - 1;
+        if (last >= reservedAppointment) {
+            reserve(last, true);
+        }
+        return first;
+    }
+
+    public String nextPatientId() {
+        int n = nextPatient.getAndIncrement();
+        if (n >= reservedPatient) {
+            reserve(n, false);
+        }
+        return "P" + n;
+    }
+
+    // Extends the reserved block past id and persists it before the id is
+    // used; the volatile marks only move once the file is written.
+    private synchronized void reserve(int id, boolean appointment) {
+        int appointmentMark = reservedAppointment;
+        int patientMark = reservedPatient;
+        if (appointment) {
+            if (id < appointmentMark) {
+                return;
+            }
+            appointmentMark = id + BLOCK;
+        } else {
+            if (id < patientMark) {
+                return;
+            }
+            patientMark = id + BLOCK;
+        }
+        save(appointmentMark, patientMark);
+        reservedAppointment = appointmentMark;
+        reservedPatient = patientMark;
+    }
+
+    // ---------- Load / save ----------
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] parts = line.split(";", 2);
+                if (parts.length != 2) {
+                    continue;
+                }
+                try {
+                    int mark = Integer.parseInt(parts[1].trim());
+                    if (parts[0].equals("appointment")) {
+                        nextAppointment.accumulateAndGet(mark, Math::max);
+                    } else if (parts[0].equals("patient")) {
+                        nextPatient.accumulateAndGet(mark, Math::max);
+                    }
+                } catch (NumberFormatException e) {
+                    System.err.println("Bad line in id file: " + line);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading id file: " + e.getMessage());
+        }
+    }
+
+    private void save(int appointmentMark, int patientMark) {
+        Path tmp = Paths.get(file + ".tmp");
+        try {
+            try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))) {
+                pw.println("appointment;" + Math.max(appointmentMark, nextAppointment.get()));
+                pw.println("patient;" + Math.max(patientMark, nextPatient.get()));
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error writing id file: " + e.getMessage());
+        }
+    }
+}
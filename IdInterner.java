@@ -0,0 +1,124 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Interns doctor and patient ids read straight from file bytes.
+ *
+ * Each distinct id gets one String and a dense int ordinal. Looking up an
+ * id that has been seen before compares bytes in place and allocates
+ * nothing, which matters when the same few thousand ids repeat across
+ * millions of appointment rows. Not thread-safe; intern during a load or
+ * under the caller's lock.
+ */
+public class IdInterner {
+
+    private String[] table = new String[64];     // open addressing, power of two
+    private int[] ordinals = new int[64];
+    private final List<String> byOrdinal = new ArrayList<>();
+
+    public int size() {
+        return byOrdinal.size();
+    }
+
+    /** The id with this ordinal. */
+    public String get(int ordinal) {
+        return byOrdinal.get(ordinal);
+    }
+
+    public String intern(String id) {
+        return get(ordinalOf(id));
+    }
+
+    public int ordinalOf(String id) {
+        int h = spread(id.hashCode());
+        int mask = table.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            String s = table[i];
+            if (s == null) {
+                return insert(i, id);
+            }
+            if (s.equals(id)) {
+                return ordinals[i];
+            }
+        }
+    }
+
+    /** Interns the ASCII bytes buf[from, to) without building a String unless the id is new. */
+    public String intern(byte[] buf, int from, int to) {
+        return get(ordinalOf(buf, from, to));
+    }
+
+    public int ordinalOf(byte[] buf, int from, int to) {
+        // String.hashCode over chars, computed from the bytes
+        int hash = 0;
+        for (int p = from; p < to; p++) {
+            byte b = buf[p];
+            if (b < 0) {
+                return ordinalOf(decode(buf, from, to)); // non-ASCII: take the slow path
+            }
+            hash = 31 * hash + b;
+        }
+        int mask = table.length - 1;
+        for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+            String s = table[i];
+            if (s == null) {
+                return insert(i, decode(buf, from, to));
+            }
+            if (sameChars(s, buf, from, to)) {
+                return ordinals[i];
+            }
+        }
+    }
+
+    private int insert(int slot, String id) {
+        int ordinal = byOrdinal.size();
+        byOrdinal.add(id);
+        table[slot] = id;
+        ordinals[slot] = ordinal;
+        if (byOrdinal.size() * 2 > table.length) {
+            rehash();
+        }
+        return ordinal;
+    }
+
+    private void rehash() {
+        String[] oldTable = table;
+        int[] oldOrdinals = ordinals;
+        table = new String[oldTable.length * 2];
+        ordinals = new int[oldTable.length * 2];
+        int mask = table.length - 1;
+        for (int j = 0; j < oldTable.length; j++) {
+            String s = oldTable[j];
+            if (s == null) {
+                continue;
+            }
+            int i = spread(s.hashCode()) & mask;
+            while (table[i] != null) {
+                i = (i + 1) & mask;
+            }
+            table[i] = s;
+            ordinals[i] = oldOrdinals[j];
+        }
+    }
+
+    private static boolean sameChars(String s, byte[] buf, int from, int to) {
+        if (s.length() != to - from) {
+            return false;
+        }
+        for (int k = 0; k < s.length(); k++) {
+            if (s.charAt(k) != buf[from + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(byte[] buf, int from, int to) {
+        return new String(buf, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
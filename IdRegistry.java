@@ -0,0 +1,75 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Id-keyed registry for patients and doctors.
+ *
+ * Lookups by id are a single hash lookup, and all() hands back the entries
+ * in insertion order (the order the combo boxes show them) without copying.
+ *
+ * Thread-safe. Entries are only ever appended, so all() can return a view
+ * of the backing array as it stood at the call; later adds never disturb
+ * a view someone is iterating.
+ */
+public class IdRegistry<T> {
+
+    private final Function<T, String> idOf;
+    private final Map<String, T> byId = new ConcurrentHashMap<>();
+
+    // append-only; slots [0, size) are never written again once published
+    private volatile Object[] items = new Object[16];
+    private volatile int size;
+
+    public IdRegistry(Function<T, String> idOf) {
+        this.idOf = idOf;
+    }
+
+    /** Adds an entry; returns false if its id is already registered. */
+    public synchronized boolean add(T item) {
+        String id = idOf.apply(item);
+        if (byId.containsKey(id)) {
+            return false;
+        }
+        Object[] arr = items;
+        if (size == arr.length) {
+            arr = Arrays.copyOf(arr, arr.length * 2);
+        }
+        arr[size] = item;
+        items = arr;
+        byId.put(id, item);
+        size = size + 1; // publishes the new slot to readers
+        return true;
+    }
+
+    public T get(String id) {
+        return id == null ? null : byId.get(id);
+    }
+
+    public boolean contains(String id) {
+        return id != null && byId.containsKey(id);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Read-only view of every entry, in insertion order, as of this call. */
+    public List<T> all() {
+        int n = size;
+        Object[] arr = items;
+        return new AbstractList<T>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public T get(int index) {
+                Objects.checkIndex(index, n);
+                return (T) arr[index];
+            }
+
+            @Override
+            public int size() {
+                return n;
+            }
+        };
+    }
+}
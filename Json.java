@@ -0,0 +1,202 @@
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the HTTP API: writing objects and arrays, and
+ * reading a request body that is one flat object of strings, numbers and
+ * booleans. Nested values in a request are rejected.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /** Builds one JSON object, keys in insertion order. */
+    public static class Obj {
+        private final StringBuilder sb = new StringBuilder("{");
+
+        public Obj put(String key, String value) {
+            return raw(key, value == null ? "null" : quote(value));
+        }
+
+        public Obj put(String key, long value) {
+            return raw(key, Long.toString(value));
+        }
+
+        public Obj put(String key, boolean value) {
+            return raw(key, Boolean.toString(value));
+        }
+
+        /** Adds a value that is already JSON (an object or array). */
+        public Obj raw(String key, String json) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append(quote(key)).append(':').append(json);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return sb + "}";
+        }
+    }
+
+    /** An array of values that are already JSON. */
+    public static String array(List<String> elements) {
+        return "[" + String.join(",", elements) + "]";
+    }
+
+    public static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // ---------- Reading ----------
+
+    /**
+     * Parses {"key": value, ...} with string, number, boolean or null values
+     * into strings (null stays null). Throws IllegalArgumentException if the
+     * text is anything else.
+     */
+    public static Map<String, String> parseObject(String text) {
+        Parser p = new Parser(text);
+        Map<String, String> result = new LinkedHashMap<>();
+        p.expect('{');
+        if (!p.consume('}')) {
+            do {
+                String key = p.string();
+                p.expect(':');
+                result.put(key, p.scalar());
+            } while (p.consume(','));
+            p.expect('}');
+        }
+        p.skipSpace();
+        if (p.pos != text.length()) {
+            throw new IllegalArgumentException("Trailing text after JSON object");
+        }
+        return result;
+    }
+
+    private static class Parser {
+        final String s;
+        int pos;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        boolean consume(char c) {
+            skipSpace();
+            if (pos < s.length() && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + pos);
+            }
+        }
+
+        String scalar() {
+            skipSpace();
+            if (pos < s.length() && s.charAt(pos) == '"') {
+                return string();
+            }
+            int start = pos;
+            while (pos < s.length() && "-+.eE0123456789truefalsn".indexOf(s.charAt(pos)) >= 0) {
+                pos++;
+            }
+            String token = s.substring(start, pos);
+            if (token.equals("null")) {
+                return null;
+            }
+            if (token.equals("true") || token.equals("false") || token.matches("-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?")) {
+                return token;
+            }
+            throw new IllegalArgumentException("Unsupported value at " + start);
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (pos < s.length()) {
+                char c = s.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= s.length()) {
+                    break;
+                }
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > s.length()) {
+                            throw new IllegalArgumentException("Bad \\u escape at " + pos);
+                        }
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        sb.append(e); // \" \\ \/
+                }
+            }
+            throw new IllegalArgumentException("Unterminated string");
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size latency histogram in the style of HdrHistogram.
+ *
+ * Values (nanoseconds) below 256 get a bucket each. Above that, every
+ * power-of-two range is split into 128 equal buckets, so a recorded value
+ * is off by less than 1% at any magnitude, from nanoseconds up to the
+ * ~18 minute cap, in about 4,500 counters. Recording is one atomic
+ * increment and takes no lock, so many threads can share one histogram.
+ * Percentiles read the counters without stopping writers.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int HALF = 1 << SUB_BITS;      // buckets per power of two
+    private static final int MAX_BITS = 40;             // values are capped at 2^40 - 1 ns
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Records one value in nanoseconds; negative values count as 0. */
+    public void record(long nanos) {
+        long v = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(indexOf(v));
+        total.increment();
+        sum.add(v);
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    // Exact below 2 * HALF; above, the top SUB_BITS + 1 bits of the value
+    private static int indexOf(long v) {
+        if (v < 2 * HALF) {
+            return (int) v;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return HALF * exp + (int) (v >>> exp);
+    }
+
+    // Largest value that lands in a bucket
+    private static long highestIn(int index) {
+        if (index < 2 * HALF) {
+            return index;
+        }
+        int exp = index / HALF - 1;
+        long mantissa = index - (long) HALF * exp;
+        return ((mantissa + 1) << exp) - 1;
+    }
+
+    /** Adds every value recorded in other to this histogram. */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        total.add(other.total.sum());
+        sum.add(other.sum.sum());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /** Clears the histogram. Values recorded concurrently may be lost. */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /** Smallest recorded value (within 1%) that p percent of values are at or below. */
+    public long percentile(double p) {
+        long n = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            n += counts.get(i);
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestIn(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /** One line: count, mean and percentiles in microseconds. */
+    public String summary() {
+        return String.format("n=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f us",
+                count(), mean() / 1e3, percentile(50) / 1e3, percentile(90) / 1e3,
+                percentile(99) / 1e3, percentile(99.9) / 1e3, max() / 1e3);
+    }
+}
@@ -0,0 +1,212 @@
+import java.io.File;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays mixed clinic traffic against an AppointmentManager at a target
+ * rate and reports end-to-end latency per operation.
+ *
+ * Traffic is open-loop: each worker has a fixed schedule of start times
+ * and a call's latency is measured from when it was due, not from when it
+ * actually started. A stall therefore shows up in the latency of every
+ * call queued behind it, as it would for real users, instead of silently
+ * lowering the request rate (coordinated omission).
+ *
+ * Operations, picked per call by the mix weights:
+ *   query  getAvailableTimeSlots for a popular doctor on a seasonal day
+ *   book   query (up to a week ahead), hold one of the free times (the
+ *          next one if another caller got there first), then book it;
+ *          a booking refused after a successful hold is a conflict
+ *   cancel cancel a booking this run made earlier
+ *
+ * The data directory is changed by the run; point it at a generated copy:
+ *   java WorkloadGenerator /tmp/clinic 1000000
+ *   java LoadTestDriver /tmp/clinic [ops/s] [seconds] [threads] [query,book,cancel]
+ * (defaults 2000 ops/s, 30 s, 8 threads, mix 70,20,10)
+ */
+public class LoadTestDriver {
+
+    private static final int QUERY = 0;
+    private static final int BOOK = 1;
+    private static final int CANCEL = 2;
+    private static final String[] NAMES = {"query", "book", "cancel"};
+
+    private final AppointmentManager manager;
+    private final List<Doctor> doctors;
+    private final List<Patient> patients;
+    private final double[] doctorWeights;
+    private final double[] dayWeights;
+    private final LocalDate firstDay = LocalDate.now();
+    private final double[] mix; // cumulative
+
+    private final LatencyHistogram[] latency = {new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram()};
+    private final LongAdder booked = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();   // booking refused despite the hold
+    private final LongAdder holdMisses = new LongAdder();  // time taken or held between query and hold
+    private final LongAdder full = new LongAdder();        // no free time all week
+    private final LongAdder nothingToCancel = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final ConcurrentLinkedQueue<Integer> bookedIds = new ConcurrentLinkedQueue<>();
+
+    public LoadTestDriver(AppointmentManager manager, double[] mixWeights, int horizonDays) {
+        this.manager = manager;
+        this.doctors = manager.getAllDoctors();
+        this.patients = manager.getAllPatients();
+        this.doctorWeights = WorkloadGenerator.zipf(doctors.size(), 1.0);
+        this.dayWeights = new double[horizonDays];
+        double acc = 0;
+        for (int i = 0; i < horizonDays; i++) {
+            acc += WorkloadGenerator.dayLoad(firstDay.plusDays(i));
+            dayWeights[i] = acc;
+        }
+        this.mix = new double[mixWeights.length];
+        acc = 0;
+        for (int i = 0; i < mixWeights.length; i++) {
+            acc += mixWeights[i];
+            mix[i] = acc;
+        }
+    }
+
+    // ---------- Running ----------
+
+    /** Runs threads workers sharing opsPerSecond for the given time, then prints the report. */
+    public void run(double opsPerSecond, int seconds, int threads) throws InterruptedException {
+        long interval = (long) (threads * 1e9 / opsPerSecond); // per worker
+        long start = System.nanoTime() + 10_000_000L;
+        long end = start + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            long offset = interval * t / threads; // stagger workers across one interval
+            Random random = new Random(t);
+            Thread worker = new Thread(() -> {
+                try {
+                    for (long due = start + offset; due < end; due += interval) {
+                        long wait = due - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                        int op = WorkloadGenerator.sample(mix, random);
+                        try {
+                            call(op, random);
+                        } catch (RuntimeException e) {
+                            errors.increment();
+                        }
+                        latency[op].record(System.nanoTime() - due);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            worker.start();
+        }
+        done.await();
+        report(System.nanoTime() - start);
+    }
+
+    private void call(int op, Random random) {
+        Doctor doctor = doctors.get(WorkloadGenerator.sample(doctorWeights, random));
+        LocalDate day = firstDay.plusDays(WorkloadGenerator.sample(dayWeights, random));
+        switch (op) {
+            case QUERY:
+                manager.getAvailableTimeSlots(doctor.getId(), day);
+                break;
+            case BOOK: {
+                // like a patient, take the first day within a week that has a free time
+                List<LocalTime> free = manager.getAvailableTimeSlots(doctor.getId(), day);
+                for (int i = 1; i < 7 && free.isEmpty(); i++) {
+                    day = day.plusDays(1);
+                    free = manager.getAvailableTimeSlots(doctor.getId(), day);
+                }
+                if (free.isEmpty()) {
+                    full.increment();
+                    break;
+                }
+                // like a desk, hold a time first and move on to the next if it is gone
+                SlotHolds.Hold hold = null;
+                int first = random.nextInt(free.size());
+                for (int i = 0; i < free.size() && hold == null; i++) {
+                    hold = manager.holdSlot(doctor.getId(), day, free.get((first + i) % free.size()));
+                    if (hold == null) {
+                        holdMisses.increment();
+                    }
+                }
+                if (hold == null) {
+                    full.increment();
+                    break;
+                }
+                String patientId = patients.get(random.nextInt(patients.size())).getId();
+                BookingResult result = manager.book(new BookingRequest(doctor.getId(), day, hold.getTime(),
+                        patientId, hold));
+                if (result.isBooked()) {
+                    result.whenDurable().join();
+                    booked.increment();
+                    bookedIds.add(result.getAppointment().getId());
+                } else {
+                    conflicts.increment();
+                }
+                break;
+            }
+            case CANCEL: {
+                Integer id = bookedIds.poll();
+                if (id == null || !manager.cancelAppointment(id)) {
+                    nothingToCancel.increment();
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("op " + op);
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        long total = 0;
+        for (LatencyHistogram h : latency) {
+            total += h.count();
+        }
+        System.out.printf("%d calls in %.1f s (%.0f ops/s)%n", total, elapsedNanos / 1e9, total / (elapsedNanos / 1e9));
+        for (int op = 0; op < NAMES.length; op++) {
+            System.out.printf("  %-7s %s%n", NAMES[op], latency[op].summary());
+        }
+        long attempts = booked.sum() + conflicts.sum();
+        System.out.printf("Bookings: %d booked, %d conflicts (%.2f%% of attempts), %d found the week full%n",
+                booked.sum(), conflicts.sum(), attempts == 0 ? 0 : 100.0 * conflicts.sum() / attempts, full.sum());
+        System.out.println("Holds refused (time gone before the hold): " + holdMisses.sum());
+        System.out.println("Cancels with nothing to cancel: " + nothingToCancel.sum() + ", errors: " + errors.sum());
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: java LoadTestDriver <dataDir> [ops/s] [seconds] [threads] [query,book,cancel]");
+            System.exit(2);
+        }
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 2000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        double[] mix = {70, 20, 10};
+        if (args.length > 4) {
+            String[] parts = args[4].split(",");
+            for (int i = 0; i < mix.length && i < parts.length; i++) {
+                mix[i] = Double.parseDouble(parts[i]);
+            }
+        }
+
+        long loadStart = System.nanoTime();
+        AppointmentManager manager = new AppointmentManager(new File(args[0]));
+        System.out.printf("Loaded %s in %.1f s%n", args[0], (System.nanoTime() - loadStart) / 1e9);
+        if (manager.getAllDoctors().isEmpty() || manager.getAllPatients().isEmpty()) {
+            System.err.println("No doctors or patients in " + args[0]);
+            System.exit(1);
+        }
+        try {
+            new LoadTestDriver(manager, mix, 90).run(rate, seconds, threads);
+        } finally {
+            manager.close();
+        }
+    }
+}
@@ -18,8 +18,13 @@ import javax.swing.SwingUtilities;
 public class MainProgram {
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
-            AppointmentManager manager = new AppointmentManager();
-            SchedulerGUI gui = new SchedulerGUI(manager);
+            // The login screen shows at once; the data files load in the background
+            SchedulerGUI gui = new SchedulerGUI(() -> {
+                AppointmentManager manager = new AppointmentManager();
+                // make sure journaled changes reach the disk on exit
+                Runtime.getRuntime().addShutdownHook(new Thread(manager::close));
+                return manager;
+            });
             gui.setTitle("ClinicFlow - Appointment Scheduler");
             gui.setLocationRelativeTo(null);
             gui.setVisible(true);
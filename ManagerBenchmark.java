@@ -0,0 +1,271 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Latency, throughput and allocation of the AppointmentManager hot paths
+ * over synthetic datasets of growing size.
+ *
+ * For each size a dataset is written to a fresh temporary directory, so the
+ * real data files are never touched. The benchmark times the first load
+ * (cold start) and a reload, then runs each operation after a warm-up and
+ * reports ops/s, latency percentiles in microseconds, and bytes allocated
+ * per call on the calling thread.
+ *
+ * The JMH version is jmh/clinicflow/jmh/ManagerJmhBenchmark (mvn -Pjmh
+ * package), which runs the same operations through open(). This plain
+ * main is the fallback that needs nothing but javac. It follows the JMH
+ * rules that matter here: warm-up before timing, every result fed to a
+ * sink so the JIT cannot drop the call, ops/s as in JMH's thrpt mode and
+ * bytes/op as in -prof gc's gc.alloc.rate.norm. Run each size in its own
+ * JVM (one size per invocation) to get JMH's fork isolation.
+ *
+ * Usage: java -Xmx4g ManagerBenchmark [sizes...]   (default 1000 10000 100000)
+ *   e.g. java -Xmx16g ManagerBenchmark 1000000 10000000
+ */
+public class ManagerBenchmark {
+
+    private static final int SLOTS_PER_DAY = 10; // of the default grid's slots, per doctor
+    private static final int DAYS = 365;
+    private static final int READS = 50_000;     // calls per cheap operation
+    private static final int SCANS = 500;        // calls per whole-history query
+    private static final int WRITES = 2_000;     // calls per booking / cancel / add
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 10_000, 100_000};
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) throws IOException {
+        Path dir = Files.createTempDirectory("clinicflow-bench");
+        try {
+            Dataset data = Dataset.write(dir, size);
+            System.out.println();
+            System.out.println("== " + size + " appointments, " + data.doctors.length + " doctors, "
+                    + data.patients.length + " patients ==");
+            printHeader();
+
+            long start = System.nanoTime();
+            AppointmentManager manager = new AppointmentManager(dir.toFile());
+            printOnce("cold start (first load)", System.nanoTime() - start);
+            manager.close();
+
+            start = System.nanoTime();
+            manager = new AppointmentManager(dir.toFile());
+            printOnce("reload", System.nanoTime() - start);
+
+            runOperations(manager, data);
+            manager.close();
+        } finally {
+            BenchmarkFiles.deleteAll(dir);
+        }
+    }
+
+    private static void runOperations(AppointmentManager m, Dataset data) {
+        String[] doctors = data.doctors;
+        String[] patients = data.patients;
+        int d = doctors.length;
+
+        for (Map.Entry<String, IntFunction<?>> read : reads(m, data).entrySet()) {
+            // a whole-history query is far slower than the rest
+            measure(read.getKey(), read.getKey().equals("getAppointmentsForDoctor") ? SCANS : READS, read.getValue());
+        }
+
+        // Book free slots after the dataset's last day, then cancel the same bookings
+        LocalDate bookFrom = data.firstDay.plusDays(DAYS);
+        int free = SlotGrid.DEFAULT.size() * d;
+        measure("scheduleAppointment", WRITES, i -> m.scheduleAppointment(doctors[i % d],
+                bookFrom.plusDays(i / free), SlotGrid.DEFAULT.time((i / d) % SlotGrid.DEFAULT.size()),
+                patients[i % patients.length]));
+        List<Integer> booked = new ArrayList<>();
+        for (String doctor : doctors) {
+            for (Appointment a : m.getAppointmentsForDoctor(doctor, bookFrom, bookFrom.plusDays(DAYS))) {
+                booked.add(a.getId());
+            }
+        }
+        measure("cancelAppointment", booked.size(),
+                i -> m.cancelAppointment(booked.get(i)));
+
+        measure("addPatient", WRITES, i -> m.addPatient("Bench Patient " + i, "555-" + (1000 + i % 9000)));
+    }
+
+    // The read paths, by name; op(i) for any i >= 0 picks a doctor, day or patient
+    private static Map<String, IntFunction<?>> reads(AppointmentManager m, Dataset data) {
+        String[] doctors = data.doctors;
+        String[] patients = data.patients;
+        int d = doctors.length;
+        Map<String, IntFunction<?>> reads = new LinkedHashMap<>();
+        reads.put("getPatient", i -> m.getPatient(patients[i % patients.length]));
+        reads.put("getAvailableTimeSlots",
+                i -> m.getAvailableTimeSlots(doctors[i % d], data.firstDay.plusDays((i / d) % DAYS)));
+        reads.put("getAppointmentsFor",
+                i -> m.getAppointmentsFor(doctors[i % d], data.firstDay.plusDays((i / d) % DAYS)));
+        reads.put("getAppointmentsForDoctor", i -> m.getAppointmentsForDoctor(doctors[i % d]));
+        return reads;
+    }
+
+    // ---------- JMH ----------
+
+    /**
+     * Fixture for the JMH benchmarks in jmh/ (mvn -Pjmh package). Writes a
+     * dataset of the given size, opens a manager on it and fills operations
+     * with the read paths plus "bookAndCancel" and "load" (a fresh manager on
+     * a second copy of the dataset). Closing the result closes the manager
+     * and deletes the data. Only JDK types are passed, because JMH will not
+     * take benchmarks from the unnamed package and a named package cannot
+     * see this one.
+     */
+    public static AutoCloseable open(int size, Map<String, IntFunction<?>> operations) throws IOException {
+        Path dir = Files.createTempDirectory("clinicflow-bench");
+        Path loadDir = Files.createTempDirectory("clinicflow-bench");
+        Dataset data = Dataset.write(dir, size);
+        Dataset.write(loadDir, size);
+        AppointmentManager m = new AppointmentManager(dir.toFile());
+
+        operations.putAll(reads(m, data));
+        // one day past the dataset, so every slot is free and is freed again
+        LocalDate bookOn = data.firstDay.plusDays(DAYS);
+        int d = data.doctors.length;
+        operations.put("bookAndCancel", i -> {
+            BookingResult result = m.book(new BookingRequest(data.doctors[i % d], bookOn,
+                    SlotGrid.DEFAULT.time((i / d) % SlotGrid.DEFAULT.size()), data.patients[i % data.patients.length]));
+            if (result.isBooked()) {
+                m.cancelAppointment(result.getAppointment().getId());
+            }
+            return result;
+        });
+        operations.put("load", i -> {
+            AppointmentManager fresh = new AppointmentManager(loadDir.toFile());
+            fresh.close();
+            return fresh;
+        });
+        return () -> {
+            m.close();
+            BenchmarkFiles.deleteAll(dir);
+            BenchmarkFiles.deleteAll(loadDir);
+        };
+    }
+
+    // ---------- Measuring ----------
+
+    // results are folded in here, like JMH's Blackhole, so no call is dead code
+    private static volatile int sink;
+
+    // Warms up on a fifth as many calls, then times each call of op(0..calls-1)
+    private static void measure(String name, int calls, IntFunction<?> op) {
+        int warmup = calls / 5;
+        long[] latencies = new long[calls - warmup];
+        int consumed = 0;
+        for (int i = 0; i < warmup; i++) {
+            consumed += consume(op.apply(i));
+        }
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = warmup; i < calls; i++) {
+            long t = System.nanoTime();
+            Object result = op.apply(i);
+            latencies[i - warmup] = System.nanoTime() - t;
+            consumed += consume(result);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        sink += consumed;
+
+        Arrays.sort(latencies);
+        int n = latencies.length;
+        System.out.printf("%-26s %12.0f %10.1f %10.1f %10.1f %10.1f %10.1f %12.0f%n", name,
+                n / (elapsed / 1e9),
+                percentile(latencies, 50) / 1e3, percentile(latencies, 90) / 1e3,
+                percentile(latencies, 99) / 1e3, percentile(latencies, 99.9) / 1e3,
+                latencies[n - 1] / 1e3, (double) allocated / n);
+    }
+
+    private static int consume(Object result) {
+        return result == null ? 0 : 1;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int i = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(i, sorted.length - 1))];
+    }
+
+    private static void printHeader() {
+        System.out.printf("%-26s %12s %10s %10s %10s %10s %10s %12s%n",
+                "operation", "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "bytes/op");
+    }
+
+    private static void printOnce(String name, long nanos) {
+        System.out.printf("%-26s %12s %10.1f ms%n", name, "", nanos / 1e6);
+    }
+
+    // ---------- Dataset ----------
+
+    // Doctors, patients and appointments filling SLOTS_PER_DAY slots a day from tomorrow
+    private static class Dataset {
+        final String[] doctors;
+        final String[] patients;
+        final LocalDate firstDay = LocalDate.now().plusDays(1);
+
+        private Dataset(int doctorCount, int patientCount) {
+            doctors = new String[doctorCount];
+            for (int i = 0; i < doctorCount; i++) {
+                doctors[i] = "D" + (100 + i);
+            }
+            patients = new String[patientCount];
+            for (int i = 0; i < patientCount; i++) {
+                patients[i] = "P" + (100 + i);
+            }
+        }
+
+        static Dataset write(Path dir, int size) throws IOException {
+            int perDoctor = SLOTS_PER_DAY * DAYS;
+            Dataset data = new Dataset(Math.max(3, (size + perDoctor - 1) / perDoctor), Math.max(100, size / 10));
+            String[] specialties = {"General", "Cardiology", "Pediatrics", "Dermatology"};
+
+            try (BufferedWriter w = Files.newBufferedWriter(dir.resolve("doctors.txt"))) {
+                for (int i = 0; i < data.doctors.length; i++) {
+                    w.write(data.doctors[i] + ";Doctor" + i + ";" + specialties[i % specialties.length] + "\n");
+                }
+            }
+            try (BufferedWriter w = Files.newBufferedWriter(dir.resolve("patients.txt"))) {
+                for (int i = 0; i < data.patients.length; i++) {
+                    w.write(data.patients[i] + ";Patient " + i + ";555-" + (1000 + i % 9000) + "\n");
+                }
+            }
+            Random random = new Random(42);
+            try (BufferedWriter w = Files.newBufferedWriter(dir.resolve("appointments.txt"))) {
+                int id = 1;
+                for (int day = 0; day < DAYS && id <= size; day++) {
+                    String date = data.firstDay.plusDays(day).toString();
+                    for (int doc = 0; doc < data.doctors.length && id <= size; doc++) {
+                        for (int slot = 0; slot < SLOTS_PER_DAY && id <= size; slot++) {
+                            LocalTime time = SlotGrid.DEFAULT.time(slot);
+                            w.write(id++ + ";" + data.patients[random.nextInt(data.patients.length)] + ";"
+                                    + data.doctors[doc] + ";" + date + ";" + time + "\n");
+                        }
+                    }
+                }
+            }
+            return data;
+        }
+    }
+}
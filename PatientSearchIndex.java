@@ -0,0 +1,240 @@
+import java.util.*;
+
+/**
+ * Type-ahead search over patients by name, id and phone digits.
+ *
+ * Each patient's searchable text is the lower-cased name words, the id
+ * and the digits of the contact. For every word the index keeps posting
+ * lists (patient ordinals, ascending) for its one- and two-character
+ * prefixes and for every three-character substring. A query word of one
+ * or two characters is a prefix lookup. A longer word intersects the
+ * lists of its trigrams and confirms the survivors with a substring check.
+ * Only candidates are scored, and the top K are kept in a small heap, so
+ * a query costs about the size of its shortest list, not the registry
+ * size.
+ *
+ * Ranking: an exact id match first, then matches at the start of a word,
+ * then matches inside a word; ties go by name. Thread-safe.
+ */
+public class PatientSearchIndex {
+
+    private static final char START = '\u0001'; // marks a prefix key
+
+    private final List<Patient> byOrdinal = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();   // " word word ... " per ordinal
+    private final List<String> sortKeys = new ArrayList<>(); // lower-case name, for ties
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    // Growable sorted int list
+    private static class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return; // same key twice in one patient
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    public synchronized int size() {
+        return byOrdinal.size();
+    }
+
+    /** Indexes a patient; call once per patient. */
+    public synchronized void add(Patient p) {
+        int ordinal = byOrdinal.size();
+        byOrdinal.add(p);
+        List<String> words = wordsOf(p);
+        StringBuilder text = new StringBuilder(" ");
+        for (String w : words) {
+            text.append(w).append(' ');
+            post(key(START, w.charAt(0), '\0'), ordinal);
+            if (w.length() >= 2) {
+                post(key(START, w.charAt(0), w.charAt(1)), ordinal);
+            }
+            for (int i = 0; i + 3 <= w.length(); i++) {
+                post(key(w.charAt(i), w.charAt(i + 1), w.charAt(i + 2)), ordinal);
+            }
+        }
+        texts.add(text.toString());
+        sortKeys.add(p.getName() == null ? "" : p.getName().toLowerCase());
+    }
+
+    private void post(long key, int ordinal) {
+        postings.computeIfAbsent(key, k -> new Postings()).add(ordinal);
+    }
+
+    // ---------- Searching ----------
+
+    /**
+     * Up to limit patients matching every word of the query, best first.
+     * An empty query returns the first patients in registry order.
+     */
+    public synchronized List<Patient> search(String query, int limit) {
+        List<String> words = normalize(query);
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        if (words.isEmpty()) {
+            return new ArrayList<>(byOrdinal.subList(0, Math.min(limit, byOrdinal.size())));
+        }
+
+        // Intersect the posting lists of every key of every word
+        int[] candidates = null;
+        int count = 0;
+        for (String w : words) {
+            for (long key : keysFor(w)) {
+                Postings p = postings.get(key);
+                if (p == null) {
+                    return new ArrayList<>();
+                }
+                if (candidates == null) {
+                    candidates = Arrays.copyOf(p.ids, p.size);
+                    count = p.size;
+                } else {
+                    count = intersect(candidates, count, p);
+                }
+                if (count == 0) {
+                    return new ArrayList<>();
+                }
+            }
+        }
+
+        // Score the survivors, keeping the best `limit` in a max-heap (worst on top)
+        String[] wordStarts = new String[words.size()];
+        for (int i = 0; i < wordStarts.length; i++) {
+            wordStarts[i] = " " + words.get(i);
+        }
+        Comparator<long[]> better = Comparator.<long[]>comparingLong(e -> e[0])
+                .thenComparing(e -> sortKeys.get((int) e[1]));
+        PriorityQueue<long[]> top = new PriorityQueue<>(limit + 1, better.reversed());
+        long[] probe = new long[2];
+        for (int i = 0; i < count; i++) {
+            int ordinal = candidates[i];
+            long score = score(ordinal, words, wordStarts);
+            if (score < 0) {
+                continue; // trigram false positive
+            }
+            probe[0] = score;
+            probe[1] = ordinal;
+            if (top.size() == limit && better.compare(probe, top.peek()) >= 0) {
+                continue; // no better than the worst kept
+            }
+            top.add(new long[]{score, ordinal});
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<long[]> best = new ArrayList<>(top);
+        best.sort(better);
+        List<Patient> result = new ArrayList<>(best.size());
+        for (long[] e : best) {
+            result.add(byOrdinal.get((int) e[1]));
+        }
+        return result;
+    }
+
+    private static long[] keysFor(String word) {
+        if (word.length() == 1) {
+            return new long[]{key(START, word.charAt(0), '\0')};
+        }
+        if (word.length() == 2) {
+            return new long[]{key(START, word.charAt(0), word.charAt(1))};
+        }
+        long[] keys = new long[word.length() - 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(word.charAt(i), word.charAt(i + 1), word.charAt(i + 2));
+        }
+        return keys;
+    }
+
+    // Keeps the candidates that are also in p; both sorted. Returns the new count.
+    private static int intersect(int[] candidates, int count, Postings p) {
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < p.size; i++) {
+            int c = candidates[i];
+            while (j < p.size && p.ids[j] < c) {
+                j++;
+            }
+            if (j < p.size && p.ids[j] == c) {
+                candidates[n++] = c;
+            }
+        }
+        return n;
+    }
+
+    // Lower is better; -1 if some word does not actually occur
+    private long score(int ordinal, List<String> words, String[] wordStarts) {
+        String text = texts.get(ordinal);
+        long score = 0;
+        for (int i = 0; i < wordStarts.length; i++) {
+            String w = words.get(i);
+            if (isId(ordinal, w)) {
+                continue; // exact id: best possible
+            }
+            if (w.length() < 3 || text.contains(wordStarts[i])) {
+                score += 1; // short words come from prefix lists, so they start a word
+            } else if (text.contains(w)) {
+                score += 2;
+            } else {
+                return -1;
+            }
+        }
+        return score;
+    }
+
+    private boolean isId(int ordinal, String w) {
+        return byOrdinal.get(ordinal).getId().equalsIgnoreCase(w);
+    }
+
+    // ---------- Normalizing ----------
+
+    private static List<String> wordsOf(Patient p) {
+        List<String> words = new ArrayList<>(normalize(p.getName()));
+        words.add(p.getId().toLowerCase());
+        String digits = digitsOf(p.getContact());
+        if (!digits.isEmpty()) {
+            words.add(digits);
+        }
+        return words;
+    }
+
+    // Lower-case letter/digit runs; a word like 555-1234 becomes 5551234
+    private static List<String> normalize(String s) {
+        List<String> words = new ArrayList<>();
+        if (s == null) {
+            return words;
+        }
+        StringBuilder w = new StringBuilder();
+        for (int i = 0; i <= s.length(); i++) {
+            char c = i < s.length() ? s.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                w.append(Character.toLowerCase(c));
+            } else if (Character.isWhitespace(c) && w.length() > 0) {
+                words.add(w.toString());
+                w.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    private static String digitsOf(String s) {
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; s != null && i < s.length(); i++) {
+            if (Character.isDigit(s.charAt(i))) {
+                digits.append(s.charAt(i));
+            }
+        }
+        return digits.toString();
+    }
+
+    private static long key(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+}
@@ -0,0 +1,159 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * A doctor's weekly working pattern, compiled into one SlotGrid per weekday
+ * plus per-date exceptions.
+ *
+ * Stored in schedules.txt, one rule per line:
+ *   doctorId;days;hours;slotMinutes;gapMinutes[;breaks]
+ *
+ *   D100;MON-FRI;09:00-18:00;30;5;12:00-13:00
+ *   D100;SAT;09:00-12:00;20;0
+ *   D100;2025-12-24;09:00-12:00;30;5     (exception for one date)
+ *   D100;2025-12-25;CLOSED
+ *
+ * days is ALL, a weekday (MON), a range (MON-FRI), a list (MON,WED,FRI) or
+ * a date. breaks is a comma-separated list of start-end pairs. Later rules
+ * override earlier ones for the same day. Weekdays no rule mentions are
+ * days off. Doctors with no rules use the clinic default every day.
+ */
+public final class ScheduleTemplate {
+
+    /** 09:00-18:00, 30-minute slots, 5-minute gap, every day. */
+    public static final ScheduleTemplate DEFAULT;
+
+    static {
+        EnumMap<DayOfWeek, SlotGrid> all = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek d : DayOfWeek.values()) {
+            all.put(d, SlotGrid.DEFAULT);
+        }
+        DEFAULT = new ScheduleTemplate(all, Collections.emptyMap(), Collections.emptyList());
+    }
+
+    private final EnumMap<DayOfWeek, SlotGrid> weekly;
+    private final Map<LocalDate, SlotGrid> exceptions;
+    private final List<String> rules;
+
+    private ScheduleTemplate(EnumMap<DayOfWeek, SlotGrid> weekly,
+                             Map<LocalDate, SlotGrid> exceptions, List<String> rules) {
+        this.weekly = weekly;
+        this.exceptions = exceptions;
+        this.rules = rules;
+    }
+
+    /** The slot grid for a date: its exception if it has one, else its weekday's. */
+    public SlotGrid gridFor(LocalDate date) {
+        if (!exceptions.isEmpty()) {
+            SlotGrid grid = exceptions.get(date);
+            if (grid != null) {
+                return grid;
+            }
+        }
+        SlotGrid grid = weekly.get(date.getDayOfWeek());
+        return grid != null ? grid : SlotGrid.EMPTY;
+    }
+
+    /** The rules (without the doctor id) this template was compiled from. */
+    public List<String> rules() {
+        return rules;
+    }
+
+    // ---------- Compiling ----------
+
+    /**
+     * Compiles rules of the form days;hours;slotMinutes;gapMinutes[;breaks].
+     * Throws IllegalArgumentException on a malformed rule.
+     */
+    public static ScheduleTemplate compile(List<String> rules) {
+        if (rules.isEmpty()) {
+            return DEFAULT;
+        }
+        EnumMap<DayOfWeek, SlotGrid> weekly = new EnumMap<>(DayOfWeek.class);
+        Map<LocalDate, SlotGrid> exceptions = new HashMap<>();
+        // identical rules share one grid instance
+        Map<String, SlotGrid> compiled = new HashMap<>();
+
+        for (String rule : rules) {
+            String[] parts = rule.split(";", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Bad schedule rule: " + rule);
+            }
+            SlotGrid grid = compiled.get(parts[1]);
+            if (grid == null) {
+                grid = compileHours(parts[1]);
+                compiled.put(parts[1], grid);
+            }
+
+            String days = parts[0].trim();
+            if (!days.isEmpty() && Character.isDigit(days.charAt(0))) {
+                exceptions.put(LocalDate.parse(days), grid);
+            } else {
+                for (DayOfWeek d : parseDays(days)) {
+                    weekly.put(d, grid);
+                }
+            }
+        }
+        return new ScheduleTemplate(weekly, exceptions, Collections.unmodifiableList(new ArrayList<>(rules)));
+    }
+
+    // hours;slot;gap[;breaks]  or  CLOSED
+    private static SlotGrid compileHours(String spec) {
+        String[] parts = spec.split(";");
+        if (parts[0].trim().equalsIgnoreCase("CLOSED")) {
+            return SlotGrid.EMPTY;
+        }
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Expected hours;slot;gap but got: " + spec);
+        }
+        LocalTime[] hours = parseRange(parts[0]);
+        int slot = Integer.parseInt(parts[1].trim());
+        int gap = Integer.parseInt(parts[2].trim());
+        List<LocalTime[]> breaks = new ArrayList<>();
+        if (parts.length > 3 && !parts[3].trim().isEmpty()) {
+            for (String b : parts[3].split(",")) {
+                breaks.add(parseRange(b));
+            }
+        }
+        return SlotGrid.of(hours[0], hours[1], slot, gap, breaks);
+    }
+
+    private static LocalTime[] parseRange(String range) {
+        String[] ends = range.trim().split("-");
+        if (ends.length != 2) {
+            throw new IllegalArgumentException("Expected HH:mm-HH:mm but got: " + range);
+        }
+        return new LocalTime[]{LocalTime.parse(ends[0].trim()), LocalTime.parse(ends[1].trim())};
+    }
+
+    private static Set<DayOfWeek> parseDays(String days) {
+        Set<DayOfWeek> result = EnumSet.noneOf(DayOfWeek.class);
+        if (days.equalsIgnoreCase("ALL")) {
+            return EnumSet.allOf(DayOfWeek.class);
+        }
+        for (String part : days.split(",")) {
+            String[] range = part.trim().split("-");
+            DayOfWeek from = parseDay(range[0]);
+            DayOfWeek to = range.length > 1 ? parseDay(range[1]) : from;
+            for (DayOfWeek d = from; ; d = d.plus(1)) {
+                result.add(d);
+                if (d == to) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static DayOfWeek parseDay(String s) {
+        String key = s.trim().toUpperCase();
+        for (DayOfWeek d : DayOfWeek.values()) {
+            if (key.length() >= 3 && d.name().startsWith(key)) {
+                return d;
+            }
+        }
+        throw new IllegalArgumentException("Unknown weekday: " + s);
+    }
+}
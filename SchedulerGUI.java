@@ -1,10 +1,22 @@
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableCellRenderer;
 
 public class SchedulerGUI extends JFrame {
 
@@ -18,6 +30,7 @@ public class SchedulerGUI extends JFrame {
     private JTabbedPane tabbedPane;
 
     // Schedule tab
+    private JTextField patientSearchField;
     private DefaultComboBoxModel<Patient> patientComboModel;
     private JComboBox<Patient> patientCombo;
     private JTextField newPatientNameField;
@@ -32,27 +45,208 @@ public class SchedulerGUI extends JFrame {
 
     private DefaultComboBoxModel<LocalTime> timeComboModel;
     private JComboBox<LocalTime> timeCombo;
+    // true while code, not the user, changes the time list
+    private boolean fillingTimes;
+    // this desk's hold on the picked time, if any
+    private SlotHolds.Hold heldSlot;
+    // bumped for every pick; a hold that lands for an older pick is given back
+    private int holdRequests;
+    // hold and release calls, in order and off the EDT
+    private final ExecutorService holdWorker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "gui-holds");
+        t.setDaemon(true);
+        return t;
+    });
 
     private JButton scheduleButton;
 
+    private JComboBox<String> specialtyCombo;
+    private JButton findNextButton;
+
     // View/Cancel tab
     private DefaultComboBoxModel<Doctor> doctorComboModel2;
     private JComboBox<Doctor> doctorCombo2;
     private JTextField dateField2;
     private JButton dateButton2;
-    private DefaultListModel<String> apptListModel;
-    private JList<String> apptList;
+    private AppointmentTableModel apptTableModel;
+    private JTable apptTable;
+    private JButton prevPageButton;
+    private JButton nextPageButton;
+    private JLabel pageLabel;
     private JButton viewButton;
     private JButton cancelButton;
 
+    private static final String ANY_SPECIALTY = "(Any)";
+    private static final int FIND_NEXT_COUNT = 10;
+    private static final int FIND_NEXT_HORIZON_DAYS = 90;
+    private static final int APPOINTMENT_PAGE_SIZE = 10000;
+    private static final int PATIENT_MATCHES = 20;
+
     private JTextField userField;
     private JPasswordField passField;
     private JLabel loginMessage;
+    private JButton loginButton;
+
+    // one per query; a newer request makes the older one's result stale
+    private final LatestOnly<List<Patient>> patientQuery = new LatestOnly<>();
+    private final LatestOnly<List<Doctor>> doctorQuery = new LatestOnly<>();
+    private final LatestOnly<List<String>> specialtyQuery = new LatestOnly<>();
+    private final LatestOnly<List<LocalTime>> slotQuery = new LatestOnly<>();
+    private final LatestOnly<List<Appointment>> scheduleQuery = new LatestOnly<>();
+    private final LatestOnly<List<AvailableSlot>> findNextQuery = new LatestOnly<>();
+
+    // what the appointment table shows (date null = every date)
+    private String viewDoctorId;
+    private LocalDate viewDate;
+    // changes that arrive while a list is loading, replayed on its result
+    private final List<Appointment> bookedWhileLoading = new ArrayList<>();
+    private final List<Appointment> cancelledWhileLoading = new ArrayList<>();
 
 
     public SchedulerGUI(AppointmentManager manager) {
-        this.manager = manager;
+        this(() -> manager);
+    }
+
+    /**
+     * Shows the login screen at once and builds the manager in the
+     * background; login is enabled when the data has loaded.
+     */
+    public SchedulerGUI(Callable<AppointmentManager> loader) {
         initializeGUI();
+        loadInBackground(loader);
+    }
+
+    private void loadInBackground(Callable<AppointmentManager> loader) {
+        loginButton.setEnabled(false);
+        loginMessage.setForeground(Color.GRAY);
+        loginMessage.setText("Loading data...");
+        new SwingWorker<AppointmentManager, Void>() {
+            @Override
+            protected AppointmentManager doInBackground() throws Exception {
+                return loader.call();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    manager = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    loginMessage.setForeground(Color.RED);
+                    loginMessage.setText("Could not load data: " + cause.getMessage());
+                    return;
+                }
+                loginMessage.setForeground(Color.RED);
+                loginMessage.setText(" ");
+                loginButton.setEnabled(true);
+                // from here on the lists follow changes instead of reloading
+                manager.addChangeListener(new ModelUpdater());
+                searchPatients();
+                refreshDoctorCombos();
+            }
+        }.execute();
+    }
+
+    /**
+     * Applies each change to the Swing models as a delta on the EDT: a new
+     * patient re-runs the patient search, a booking or cancellation is one
+     * table row and at most one time-slot reload.
+     */
+    private class ModelUpdater implements ClinicChangeListener {
+        @Override
+        public void appointmentBooked(Appointment appt) {
+            onEdt(() -> {
+                if (scheduleQuery.isRunning()) {
+                    bookedWhileLoading.add(appt);
+                }
+                if (isShown(appt)) {
+                    apptTableModel.insert(appt);
+                    updatePageControls();
+                }
+                if (isSlotListFor(appt)) {
+                    fillTimes(() -> timeComboModel.removeElement(appt.getTime()));
+                }
+            });
+        }
+
+        @Override
+        public void appointmentCancelled(Appointment appt) {
+            onEdt(() -> {
+                if (scheduleQuery.isRunning()) {
+                    cancelledWhileLoading.add(appt);
+                }
+                apptTableModel.remove(appt.getId());
+                updatePageControls();
+                if (isSlotListFor(appt)) {
+                    refreshTimeSlots((LocalTime) timeCombo.getSelectedItem()); // the slot is free again
+                }
+            });
+        }
+
+        @Override
+        public void patientAdded(Patient patient) {
+            onEdt(() -> searchPatients()); // the patient may match what is typed
+        }
+    }
+
+    // Runs now when already on the EDT, so a change made from the GUI shows at once
+    private static void onEdt(Runnable r) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            r.run();
+        } else {
+            SwingUtilities.invokeLater(r);
+        }
+    }
+
+    private boolean isShown(Appointment appt) {
+        return appt.getDoctorId().equals(viewDoctorId)
+                && (viewDate == null || viewDate.equals(appt.getDate()));
+    }
+
+    private boolean isSlotListFor(Appointment appt) {
+        Doctor doctor = (Doctor) doctorCombo.getSelectedItem();
+        return doctor != null && doctor.getId().equals(appt.getDoctorId())
+                && dateField.getText().trim().equals(appt.getDate().toString());
+    }
+
+    /**
+     * Runs queries on SwingWorker threads and renders only the result of
+     * the latest one. A stale worker is cancelled without interrupting it,
+     * so a query that is reading a file finishes cleanly and is ignored.
+     */
+    private static class LatestOnly<T> {
+        private SwingWorker<T, Void> current; // EDT only
+
+        boolean isRunning() {
+            return current != null;
+        }
+
+        void run(Supplier<T> query, Consumer<T> render) {
+            if (current != null) {
+                current.cancel(false);
+            }
+            SwingWorker<T, Void> worker = new SwingWorker<T, Void>() {
+                @Override
+                protected T doInBackground() {
+                    return query.get();
+                }
+
+                @Override
+                protected void done() {
+                    if (isCancelled() || current != this) {
+                        return;
+                    }
+                    current = null;
+                    try {
+                        render.accept(get());
+                    } catch (InterruptedException | ExecutionException e) {
+                        System.err.println("Query failed: " + e.getCause());
+                    }
+                }
+            };
+            current = worker;
+            worker.execute();
+        }
     }
 
     private void initializeGUI() {
@@ -70,11 +264,6 @@ public class SchedulerGUI extends JFrame {
         setSize(600, 450);
         setLocationRelativeTo(null);
 
-
-    // Load dropdown lists
-    refreshPatientCombo();
-    refreshDoctorCombos();
-
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     setSize(600, 450);
 }
@@ -108,7 +297,7 @@ public class SchedulerGUI extends JFrame {
 
         // Login button
         gc.gridy = 3;
-        JButton loginButton = new JButton("Login");
+        loginButton = new JButton("Login");
         loginPanel.add(loginButton, gc);
 
         // Button behaviour
@@ -120,9 +309,6 @@ public class SchedulerGUI extends JFrame {
                 loginMessage.setText(" ");
                 userField.setText("");
                 passField.setText("");
-                // make sure dropdowns are fresh
-                refreshPatientCombo();
-                refreshDoctorCombos();
                 // switch from LOGIN screen to main app
                 mainLayout.show(mainPanel, "APP");
             } else {
@@ -159,7 +345,32 @@ public class SchedulerGUI extends JFrame {
 
         int row = 0;
 
-        // Existing patients dropdown
+        // Type-ahead patient search: name, ID or phone
+        gc.gridx = 0; gc.gridy = row;
+        panel.add(new JLabel("Find Patient:"), gc);
+        gc.gridx = 1;
+        patientSearchField = new JTextField(15);
+        patientSearchField.setToolTipText("Name, patient ID or phone number");
+        patientSearchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchPatients();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchPatients();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // attribute changes only
+            }
+        });
+        panel.add(patientSearchField, gc);
+
+        row++;
+        // Matching patients dropdown
         gc.gridx = 0; gc.gridy = row;
         panel.add(new JLabel("Select Patient:"), gc);
         gc.gridx = 1;
@@ -226,6 +437,24 @@ public class SchedulerGUI extends JFrame {
         timeCombo = new JComboBox<>(timeComboModel);
         timeCombo.setPrototypeDisplayValue(LocalTime.of(9, 0)); // for width
         panel.add(timeCombo, gc);
+        timeCombo.addActionListener(e -> {
+            if (!fillingTimes) {
+                holdPickedTime();
+            }
+        });
+
+        // Clinic-wide search for the earliest openings
+        row++;
+        gc.gridx = 0; gc.gridy = row;
+        panel.add(new JLabel("Specialty:"), gc);
+        gc.gridx = 1;
+        specialtyCombo = new JComboBox<>();
+        panel.add(specialtyCombo, gc);
+        gc.gridx = 2;
+        findNextButton = new JButton("Find Next Available");
+        panel.add(findNextButton, gc);
+
+        findNextButton.addActionListener(e -> handleFindNext());
 
 
         // Schedule button
@@ -277,15 +506,57 @@ public class SchedulerGUI extends JFrame {
         gc.gridx = 0; gc.gridy = row;
         panel.add(new JLabel("Appointments:"), gc);
 
+        // Rows are rendered as they scroll into view; click a header to sort
         row++;
         gc.gridx = 0; gc.gridy = row; gc.gridwidth = 3;
-        apptListModel = new DefaultListModel<>();
-        apptList = new JList<>(apptListModel);
-        apptList.setVisibleRowCount(8);
-        apptList.setFixedCellWidth(350);
-        JScrollPane scroll = new JScrollPane(apptList);
+        apptTableModel = new AppointmentTableModel(id -> manager.getPatient(id), APPOINTMENT_PAGE_SIZE);
+        apptTable = new JTable(apptTableModel);
+        apptTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        apptTable.setFillsViewportHeight(true);
+        apptTable.setPreferredScrollableViewportSize(new Dimension(450, 8 * apptTable.getRowHeight()));
+        apptTable.getColumnModel().getColumn(AppointmentTableModel.PHONE).setCellRenderer(
+                new DefaultTableCellRenderer() {
+                    @Override
+                    protected void setValue(Object value) {
+                        super.setValue(formatPhone((String) value));
+                    }
+                });
+        apptTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = apptTable.columnAtPoint(e.getPoint());
+                if (column >= 0) {
+                    apptTableModel.sortBy(apptTable.convertColumnIndexToModel(column));
+                    updatePageControls();
+                }
+            }
+        });
+        apptTable.getSelectionModel().addListSelectionListener(
+                e -> cancelButton.setEnabled(apptTable.getSelectedRow() >= 0));
+        JScrollPane scroll = new JScrollPane(apptTable);
         panel.add(scroll, gc);
 
+        row++;
+        gc.gridx = 0; gc.gridy = row; gc.gridwidth = 1;
+        prevPageButton = new JButton("< Prev");
+        panel.add(prevPageButton, gc);
+        gc.gridx = 1;
+        pageLabel = new JLabel(" ");
+        panel.add(pageLabel, gc);
+        gc.gridx = 2;
+        nextPageButton = new JButton("Next >");
+        panel.add(nextPageButton, gc);
+
+        prevPageButton.addActionListener(e -> {
+            apptTableModel.setPage(apptTableModel.getPage() - 1);
+            updatePageControls();
+        });
+        nextPageButton.addActionListener(e -> {
+            apptTableModel.setPage(apptTableModel.getPage() + 1);
+            updatePageControls();
+        });
+        updatePageControls();
+
         row++;
         gc.gridx = 0; gc.gridy = row; gc.gridwidth = 2;
         cancelButton = new JButton("Cancel Selected Appointment");
@@ -300,38 +571,58 @@ public class SchedulerGUI extends JFrame {
 
     // ---------- Helpers ----------
 
-    private void refreshPatientCombo() {
-        patientComboModel.removeAllElements();
-        List<Patient> all = manager.getAllPatients();
-        for (Patient p : all) {
-            patientComboModel.addElement(p);
-        }
-        if (!all.isEmpty()) {
-            patientCombo.setSelectedIndex(0);
+    // Fills the patient combo with the best matches for the search field, best first
+    private void searchPatients() {
+        if (manager == null) {
+            return; // still loading; the load runs the first search
         }
+        String query = patientSearchField.getText();
+        patientQuery.run(() -> manager.searchPatients(query, PATIENT_MATCHES), matches -> {
+            // a fresh model fires one change instead of one per patient
+            patientComboModel = new DefaultComboBoxModel<>(matches.toArray(new Patient[0]));
+            patientCombo.setModel(patientComboModel);
+            if (!matches.isEmpty()) {
+                patientCombo.setSelectedIndex(0);
+            }
+        });
     }
 
     private void refreshDoctorCombos() {
-        doctorComboModel.removeAllElements();
-        doctorComboModel2.removeAllElements();
-        List<Doctor> all = manager.getAllDoctors();
-        for (Doctor d : all) {
-            doctorComboModel.addElement(d);
-            doctorComboModel2.addElement(d);
-        }
-        if (!all.isEmpty()) {
-            doctorCombo.setSelectedIndex(0);
-            doctorCombo2.setSelectedIndex(0);
-        }
+        doctorQuery.run(() -> new ArrayList<>(manager.getAllDoctors()), all -> {
+            doctorComboModel.removeAllElements();
+            doctorComboModel2.removeAllElements();
+            for (Doctor d : all) {
+                doctorComboModel.addElement(d);
+                doctorComboModel2.addElement(d);
+            }
+            if (!all.isEmpty()) {
+                doctorCombo.setSelectedIndex(0);
+                doctorCombo2.setSelectedIndex(0);
+            }
+        });
+
+        specialtyQuery.run(manager::getSpecialties, specialties -> {
+            specialtyCombo.removeAllItems();
+            specialtyCombo.addItem(ANY_SPECIALTY);
+            for (String spec : specialties) {
+                specialtyCombo.addItem(spec);
+            }
+        });
     }
 
     private void refreshTimeSlots() {
-        timeComboModel.removeAllElements();
+        refreshTimeSlots(null);
+    }
+
+    // Loads free slots off the EDT; a quick run of doctor/date changes only
+    // renders the last one. select, if given, is picked once they arrive.
+    private void refreshTimeSlots(LocalTime select) {
+        fillTimes(timeComboModel::removeAllElements);
 
         Doctor doctor = (Doctor) doctorCombo.getSelectedItem();
         String dateStr = dateField.getText().trim();
 
-        if (doctor == null || dateStr.isEmpty()) {
+        if (manager == null || doctor == null || dateStr.isEmpty()) {
             return; // nothing to populate yet
         }
 
@@ -342,13 +633,79 @@ public class SchedulerGUI extends JFrame {
             return; // invalid date in field; keep combo empty
         }
 
-        List<LocalTime> slots = manager.getAvailableTimeSlots(doctor.getId(), date);
-        for (LocalTime t : slots) {
-            timeComboModel.addElement(t);
+        if (heldSlot != null && !(heldSlot.getDoctorId().equals(doctor.getId()) && heldSlot.getDate().equals(date))) {
+            releaseLater(heldSlot); // moved to another doctor or day
+            heldSlot = null;
+            holdRequests++;
         }
+        SlotHolds.Hold own = heldSlot;
+        slotQuery.run(() -> manager.getAvailableTimeSlots(doctor.getId(), date, own), slots -> fillTimes(() -> {
+            timeComboModel.removeAllElements();
+            for (LocalTime t : slots) {
+                timeComboModel.addElement(t);
+            }
+            if (select != null && slots.contains(select)) {
+                timeCombo.setSelectedItem(select);
+            } else if (timeComboModel.getSize() > 0) {
+                timeCombo.setSelectedIndex(0);
+            }
+        }));
+    }
 
-        if (timeComboModel.getSize() > 0) {
-            timeCombo.setSelectedIndex(0);
+    private void fillTimes(Runnable change) {
+        fillingTimes = true;
+        try {
+            change.run();
+        } finally {
+            fillingTimes = false;
+        }
+    }
+
+    // Holds the time the user picked (giving up any earlier hold), so no
+    // other desk can book it while this one fills in the form
+    private void holdPickedTime() {
+        Doctor doctor = (Doctor) doctorCombo.getSelectedItem();
+        LocalTime time = (LocalTime) timeCombo.getSelectedItem();
+        LocalDate date;
+        try {
+            date = LocalDate.parse(dateField.getText().trim());
+        } catch (DateTimeParseException ex) {
+            date = null;
+        }
+        if (heldSlot != null && doctor != null && heldSlot.getDoctorId().equals(doctor.getId())
+                && heldSlot.getDate().equals(date) && heldSlot.getTime().equals(time)) {
+            return; // already ours
+        }
+        releaseLater(heldSlot);
+        heldSlot = null;
+        int request = ++holdRequests;
+        if (doctor == null || date == null || time == null) {
+            return;
+        }
+
+        String doctorId = doctor.getId();
+        LocalDate day = date;
+        holdWorker.execute(() -> {
+            SlotHolds.Hold hold = manager.holdSlot(doctorId, day, time);
+            SwingUtilities.invokeLater(() -> {
+                if (request != holdRequests) {
+                    releaseLater(hold); // the user has picked again meanwhile
+                    return;
+                }
+                heldSlot = hold;
+                if (hold == null) {
+                    JOptionPane.showMessageDialog(this,
+                            "That time was just taken at another desk. Please pick another.",
+                            "Time taken", JOptionPane.WARNING_MESSAGE);
+                    refreshTimeSlots();
+                }
+            });
+        });
+    }
+
+    private void releaseLater(SlotHolds.Hold hold) {
+        if (hold != null) {
+            holdWorker.execute(() -> manager.releaseHold(hold));
         }
     }
 
@@ -370,6 +727,53 @@ public class SchedulerGUI extends JFrame {
         }
     }
 
+    private void handleFindNext() {
+        String selected = (String) specialtyCombo.getSelectedItem();
+        String spec = ANY_SPECIALTY.equals(selected) ? null : selected;
+
+        findNextButton.setEnabled(false);
+        findNextQuery.run(() -> manager.findNextAvailable(spec, FIND_NEXT_COUNT, FIND_NEXT_HORIZON_DAYS),
+                slots -> {
+                    findNextButton.setEnabled(true);
+                    showOpenings(slots);
+                });
+    }
+
+    private void showOpenings(List<AvailableSlot> slots) {
+        if (slots.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                    "No free slots in the next " + FIND_NEXT_HORIZON_DAYS + " days.",
+                    "No openings", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        DefaultListModel<String> model = new DefaultListModel<>();
+        for (AvailableSlot slot : slots) {
+            Doctor d = manager.getDoctor(slot.getDoctorId());
+            model.addElement(slot.getDate() + " " + slot.getTime() + " - "
+                    + (d != null ? d.toString() : slot.getDoctorId()));
+        }
+        JList<String> list = new JList<>(model);
+        list.setSelectedIndex(0);
+        list.setVisibleRowCount(Math.min(FIND_NEXT_COUNT, 10));
+
+        int choice = JOptionPane.showConfirmDialog(this, new JScrollPane(list),
+                "Earliest openings", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        int idx = list.getSelectedIndex();
+        if (choice != JOptionPane.OK_OPTION || idx < 0) {
+            return;
+        }
+
+        // Fill the form with the chosen opening
+        AvailableSlot picked = slots.get(idx);
+        Doctor d = manager.getDoctor(picked.getDoctorId());
+        if (d != null) {
+            doctorCombo.setSelectedItem(d);
+        }
+        dateField.setText(picked.getDate().toString());
+        refreshTimeSlots(picked.getTime());
+    }
+
     private void handleAddPatient() {
         String name = newPatientNameField.getText().trim();
         String contact = newPatientContactField.getText().trim();
@@ -380,8 +784,13 @@ public class SchedulerGUI extends JFrame {
             return;
         }
         Patient p = manager.addPatient(name, contact);
-        refreshPatientCombo();
-        patientCombo.setSelectedItem(p);
+        if (p == null) {
+            JOptionPane.showMessageDialog(this,
+                    "Name and contact cannot contain ';' or line breaks.",
+                    "Invalid data", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        patientSearchField.setText(p.getId()); // an exact ID match is listed first
         newPatientNameField.setText("");
         newPatientContactField.setText("");
         JOptionPane.showMessageDialog(this,
@@ -422,19 +831,32 @@ public class SchedulerGUI extends JFrame {
             return;
         }
 
-        boolean ok = manager.scheduleAppointment(
-                doctor.getId(), date, time, patient.getId());
+        // Booked in memory at once; the disk write finishes in the background
+        SlotHolds.Hold hold = heldSlot != null && heldSlot.getDoctorId().equals(doctor.getId())
+                && heldSlot.getDate().equals(date) && heldSlot.getTime().equals(time) ? heldSlot : null;
+        BookingResult result = manager.book(new BookingRequest(
+                doctor.getId(), date, time, patient.getId(), hold));
+        result.whenDurable().thenAccept(saved -> {
+            if (result.isBooked() && !saved) {
+                SwingUtilities.invokeLater(this::showNotSaved);
+            }
+        });
 
-        if (!ok) {
+        if (result.getStatus() == BookingResult.Status.HELD) {
+            JOptionPane.showMessageDialog(this,
+                    "Could not schedule. Another desk is booking that time.",
+                    "Schedule failed", JOptionPane.ERROR_MESSAGE);
+        } else if (!result.isBooked()) {
             JOptionPane.showMessageDialog(this,
                     "Could not schedule. Either the doctor is busy at that time or the time is in the past.",
                     "Schedule failed", JOptionPane.ERROR_MESSAGE);
         } else {
+            heldSlot = null; // used up by the booking
             JOptionPane.showMessageDialog(this,
                     "Appointment scheduled.",
                     "Success", JOptionPane.INFORMATION_MESSAGE);
             dateField.setText("");
-            timeComboModel.removeAllElements();
+            fillTimes(timeComboModel::removeAllElements);
         }
     }
 
@@ -449,14 +871,8 @@ public class SchedulerGUI extends JFrame {
             return;
         }
 
-        List<Appointment> list;
-
-        if (dateStr.isEmpty()) {
-            // No date chosen → show all appointments for this doctor
-            list = manager.getAppointmentsForDoctor(doctor.getId());
-        } else {
-            // Date chosen → filter to that day
-            LocalDate date;
+        LocalDate date = null;
+        if (!dateStr.isEmpty()) {
             try {
                 date = LocalDate.parse(dateStr);
             } catch (DateTimeParseException ex) {
@@ -465,41 +881,61 @@ public class SchedulerGUI extends JFrame {
                         "Invalid date", JOptionPane.ERROR_MESSAGE);
                 return;
             }
-            list = manager.getAppointmentsFor(doctor.getId(), date);
         }
 
-        apptListModel.clear();
-
-        if (list.isEmpty()) {
-            apptListModel.addElement("(No appointments)");
-            cancelButton.setEnabled(false);
-            apptList.putClientProperty("apptListData", null);
-        } else {
-            for (Appointment appt : list) {
-                Patient p = manager.getPatient(appt.getPatientId());
-                String patientName = (p != null ? p.getName() : appt.getPatientId());
-                String phone = (p != null ? formatPhone(p.getContact()) : "N/A");
-
-                String line = appt.getDate().toString() + " " +
-                        appt.getTime().toString() + " - " +
-                        patientName + " (" + appt.getPatientId() + ")" +
-                        "  Phone: " + phone;
+        LocalDate day = date;
+        Supplier<List<Appointment>> query = day == null
+                // No date chosen → show all appointments for this doctor
+                ? () -> manager.getAppointmentsForDoctor(doctor.getId())
+                // Date chosen → filter to that day
+                : () -> manager.getAppointmentsFor(doctor.getId(), day);
+
+        // past months may come off disk, so fetch off the EDT
+        bookedWhileLoading.clear();
+        cancelledWhileLoading.clear();
+        scheduleQuery.run(query, list -> showAppointments(doctor.getId(), day, list));
+    }
 
-                apptListModel.addElement(line);
+    private void showAppointments(String doctorId, LocalDate date, List<Appointment> list) {
+        // the table reads the result directly; nothing is built per row here
+        viewDoctorId = doctorId;
+        viewDate = date;
+        apptTableModel.setAppointments(list);
+        // changes made while the query ran may be missing from its result
+        for (Appointment appt : bookedWhileLoading) {
+            if (isShown(appt)) {
+                apptTableModel.insert(appt);
             }
-            apptList.putClientProperty("apptListData", list);
-            cancelButton.setEnabled(true);
         }
+        for (Appointment appt : cancelledWhileLoading) {
+            apptTableModel.remove(appt.getId());
+        }
+        bookedWhileLoading.clear();
+        cancelledWhileLoading.clear();
+        cancelButton.setEnabled(false);
+        updatePageControls();
+    }
+
+    private void updatePageControls() {
+        int total = apptTableModel.getTotalCount();
+        int page = apptTableModel.getPage();
+        int pages = apptTableModel.getPageCount();
+        if (total == 0) {
+            pageLabel.setText("(No appointments)");
+        } else {
+            pageLabel.setText(total + " appointments, page " + (page + 1) + " of " + pages);
+        }
+        prevPageButton.setEnabled(page > 0);
+        nextPageButton.setEnabled(page < pages - 1);
     }
 
     private void handleCancel() {
-        int idx = apptList.getSelectedIndex();
-        List<Appointment> list = (List<Appointment>) apptList.getClientProperty("apptListData");
-        if (list == null || idx < 0 || idx >= list.size()) {
+        int row = apptTable.getSelectedRow();
+        if (row < 0) {
             return;
         }
 
-        Appointment appt = list.get(idx);
+        Appointment appt = apptTableModel.appointmentAt(apptTable.convertRowIndexToModel(row));
         Doctor doc = manager.getDoctor(appt.getDoctorId());
 
         int choice = JOptionPane.showConfirmDialog(this,
@@ -509,17 +945,25 @@ public class SchedulerGUI extends JFrame {
                 "Confirm cancel", JOptionPane.YES_NO_OPTION);
 
         if (choice == JOptionPane.YES_OPTION) {
-            boolean removed = manager.cancelAppointment(appt.getId());
-            if (removed) {
-                JOptionPane.showMessageDialog(this, "Appointment canceled.",
-                        "Canceled", JOptionPane.INFORMATION_MESSAGE);
-                handleViewSchedule();
-            } else {
-                JOptionPane.showMessageDialog(this, "Could not cancel appointment.",
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            // answered once the cancellation is on disk, without blocking the UI
+            manager.cancelAppointmentAsync(appt.getId()).thenAccept(removed ->
+                    SwingUtilities.invokeLater(() -> {
+                        if (removed) {
+                            JOptionPane.showMessageDialog(this, "Appointment canceled.",
+                                    "Canceled", JOptionPane.INFORMATION_MESSAGE);
+                        } else {
+                            JOptionPane.showMessageDialog(this, "Could not cancel appointment.",
+                                    "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    }));
         }
     }
+
+    private void showNotSaved() {
+        JOptionPane.showMessageDialog(this,
+                "A change could not be saved to disk. Check the console for details.",
+                "Save failed", JOptionPane.ERROR_MESSAGE);
+    }
     // ---------- Phone formatting helper ----------
     private String formatPhone(String raw) {
         if (raw == null) {
@@ -0,0 +1,150 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Read-through LRU cache of free-slot lists, keyed by doctor-day.
+ *
+ * Writers call invalidate() for every doctor-day they book or cancel, after
+ * the change is visible in the index. A list that was being computed while
+ * its day was invalidated is returned to its caller but not stored, so the
+ * cache never keeps an answer older than the last write to that day.
+ *
+ * Free slots also change with the clock: on the current day, slots that
+ * have started drop off. A cached list therefore expires when its first
+ * slot starts, and at the end of its day; past days never change.
+ *
+ * Thread-safe. Lookups take a short lock; the list itself is computed
+ * outside it.
+ */
+public class SlotCache {
+
+    private static final class Key {
+        final String doctorId;
+        final long epochDay;
+
+        Key(String doctorId, LocalDate date) {
+            this.doctorId = doctorId;
+            this.epochDay = date.toEpochDay();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return epochDay == k.epochDay && doctorId.equals(k.doctorId);
+        }
+
+        @Override
+        public int hashCode() {
+            return doctorId.hashCode() * 31 + Long.hashCode(epochDay);
+        }
+    }
+
+    // A cached list, or a placeholder (slots == null) while one is computed
+    private static final class Entry {
+        List<LocalTime> slots;
+        LocalDateTime expires; // null = never
+    }
+
+    // access-ordered, so the eldest entry is the least recently used day
+    private final LinkedHashMap<Key, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SlotCache(int maxEntries) {
+        this.entries = new LinkedHashMap<Key, Entry>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= maxEntries) {
+                    return false;
+                }
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * The free slots for a doctor-day as of now, from the cache or else from
+     * compute (which must answer for the same now). The list is read-only.
+     */
+    public List<LocalTime> get(String doctorId, LocalDate date, LocalDateTime now,
+                               Supplier<List<LocalTime>> compute) {
+        Key key = new Key(doctorId, date);
+        Entry pending = new Entry();
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null && e.slots != null && (e.expires == null || now.isBefore(e.expires))) {
+                hits.increment();
+                return e.slots;
+            }
+            entries.put(key, pending);
+        }
+        misses.increment();
+
+        List<LocalTime> slots = Collections.unmodifiableList(compute.get());
+        synchronized (this) {
+            // stored only if nobody invalidated (or recomputed) the day meanwhile
+            if (entries.get(key) == pending) {
+                pending.expires = expiry(date, slots, now);
+                pending.slots = slots;
+            }
+        }
+        return slots;
+    }
+
+    private static LocalDateTime expiry(LocalDate date, List<LocalTime> slots, LocalDateTime now) {
+        if (date.isBefore(now.toLocalDate())) {
+            return null;
+        }
+        return slots.isEmpty() ? date.plusDays(1).atStartOfDay() : date.atTime(slots.get(0));
+    }
+
+    /** Drops the doctor-day; call after every booking or cancellation on it. */
+    public synchronized void invalidate(String doctorId, LocalDate date) {
+        if (entries.remove(new Key(doctorId, date)) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /** Drops the doctor's days that match, e.g. those a schedule change moves. */
+    public synchronized void invalidateDays(String doctorId, Predicate<LocalDate> changed) {
+        Iterator<Key> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            Key k = it.next();
+            if (k.doctorId.equals(doctorId) && changed.test(LocalDate.ofEpochDay(k.epochDay))) {
+                it.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long invalidations() {
+        return invalidations.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+}
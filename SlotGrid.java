@@ -0,0 +1,144 @@
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable list of the appointment start times in one day.
+ *
+ * Slot i starts at startMinute(i) (minutes after midnight) and the grid is
+ * sorted, so a slot index doubles as a bit position in availability
+ * bitmaps. The LocalTime for each slot is built once here and shared by
+ * every query result.
+ */
+public final class SlotGrid {
+
+    /** A day with no slots (doctor not working). */
+    public static final SlotGrid EMPTY = new SlotGrid(new int[0], 0);
+
+    /** Clinic default: 30-minute slots, 5-minute gap, 09:00 to 18:00. */
+    public static final SlotGrid DEFAULT = regular(LocalTime.of(9, 0), LocalTime.of(18, 0), 30, 5);
+
+    private final int[] startMinutes;
+    private final int slotMinutes;
+    private final LocalTime[] times;
+    private final long[] allMask;
+
+    private SlotGrid(int[] startMinutes, int slotMinutes) {
+        this.startMinutes = startMinutes;
+        this.slotMinutes = slotMinutes;
+        this.times = new LocalTime[startMinutes.length];
+        for (int i = 0; i < startMinutes.length; i++) {
+            times[i] = LocalTime.of(startMinutes[i] / 60, startMinutes[i] % 60);
+        }
+        this.allMask = new long[wordCount()];
+        for (int i = 0; i < startMinutes.length; i++) {
+            allMask[i >>> 6] |= 1L << i;
+        }
+    }
+
+    /**
+     * Back-to-back slots of slotMinutes with gapMinutes between them, the
+     * last one finishing by end.
+     */
+    public static SlotGrid regular(LocalTime start, LocalTime end, int slotMinutes, int gapMinutes) {
+        return of(start, end, slotMinutes, gapMinutes, Collections.emptyList());
+    }
+
+    /**
+     * Like regular(), but no slot may overlap a break; the next slot after
+     * a break starts when the break ends. Each break is {start, end}.
+     */
+    public static SlotGrid of(LocalTime start, LocalTime end, int slotMinutes, int gapMinutes,
+                              List<LocalTime[]> breaks) {
+        if (slotMinutes <= 0 || gapMinutes < 0) {
+            throw new IllegalArgumentException("Bad slot length or gap: " + slotMinutes + "/" + gapMinutes);
+        }
+        int from = minuteOf(start);
+        int to = minuteOf(end);
+        List<Integer> starts = new ArrayList<>();
+        int t = from;
+        while (t + slotMinutes <= to) {
+            int breakEnd = -1;
+            for (LocalTime[] b : breaks) {
+                if (t < minuteOf(b[1]) && minuteOf(b[0]) < t + slotMinutes) {
+                    breakEnd = Math.max(breakEnd, minuteOf(b[1]));
+                }
+            }
+            if (breakEnd >= 0) {
+                t = breakEnd;
+                continue;
+            }
+            starts.add(t);
+            t += slotMinutes + gapMinutes;
+        }
+        int[] arr = new int[starts.size()];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = starts.get(i);
+        }
+        return arr.length == 0 ? EMPTY : new SlotGrid(arr, slotMinutes);
+    }
+
+    private static int minuteOf(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    public int size() {
+        return startMinutes.length;
+    }
+
+    /** Number of 64-bit words a bitmap over this grid needs. */
+    public int wordCount() {
+        return Math.max(1, (startMinutes.length + 63) >>> 6);
+    }
+
+    /** Length of every slot in minutes (0 for EMPTY). */
+    public int slotMinutes() {
+        return slotMinutes;
+    }
+
+    public int startMinute(int slot) {
+        return startMinutes[slot];
+    }
+
+    public LocalTime time(int slot) {
+        return times[slot];
+    }
+
+    /** Slot index starting at this time, or -1 if the time is off the grid. */
+    public int indexOf(LocalTime time) {
+        if (time.getSecond() != 0 || time.getNano() != 0) {
+            return -1;
+        }
+        int idx = Arrays.binarySearch(startMinutes, time.getHour() * 60 + time.getMinute());
+        return idx >= 0 ? idx : -1;
+    }
+
+    /** Index of the first slot starting at or after minuteOfDay. */
+    public int firstAtOrAfter(int minuteOfDay) {
+        int idx = Arrays.binarySearch(startMinutes, minuteOfDay);
+        return idx >= 0 ? idx : -idx - 1;
+    }
+
+    /** Bit mask with one bit set per slot in the grid. */
+    public long allMask(int word) {
+        return allMask[word];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SlotGrid && slotMinutes == ((SlotGrid) o).slotMinutes
+                && Arrays.equals(startMinutes, ((SlotGrid) o).startMinutes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(startMinutes) * 31 + slotMinutes;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(times);
+    }
+}
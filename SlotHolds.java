@@ -0,0 +1,230 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Short reservations of single slots, taken while a desk fills in the
+ * booking form, so two desks cannot both work towards the same time.
+ *
+ * A hold is one putIfAbsent on a concurrent map keyed by doctor, date and
+ * time; nothing is locked. Holds are kept in memory only and lapse after
+ * a fixed time to live. A hashed timer wheel (one bucket per second, swept
+ * by a daemon thread) removes lapsed holds and reports each one to
+ * onExpired. Until the sweep gets to it, a lapsed hold already counts as
+ * gone for every check here.
+ */
+public class SlotHolds {
+
+    private static final int WHEEL_SIZE = 256; // buckets, power of two
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** One held slot. */
+    public static class Hold {
+        private final long id;
+        private final String doctorId;
+        private final LocalDate date;
+        private final LocalTime time;
+        private final long deadline; // System.nanoTime()
+
+        Hold(long id, String doctorId, LocalDate date, LocalTime time, long deadline) {
+            this.id = id;
+            this.doctorId = doctorId;
+            this.date = date;
+            this.time = time;
+            this.deadline = deadline;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getDoctorId() {
+            return doctorId;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public LocalTime getTime() {
+            return time;
+        }
+
+        boolean isLive(long now) {
+            return now - deadline < 0;
+        }
+
+        @Override
+        public String toString() {
+            return "hold " + id + " on " + date + " " + time + " [Doctor " + doctorId + "]";
+        }
+    }
+
+    private static final class SlotKey {
+        final String doctorId;
+        final long epochDay;
+        final int minute;
+
+        SlotKey(String doctorId, LocalDate date, LocalTime time) {
+            this.doctorId = doctorId;
+            this.epochDay = date.toEpochDay();
+            this.minute = time.getHour() * 60 + time.getMinute();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SlotKey)) {
+                return false;
+            }
+            SlotKey k = (SlotKey) o;
+            return epochDay == k.epochDay && minute == k.minute && doctorId.equals(k.doctorId);
+        }
+
+        @Override
+        public int hashCode() {
+            return (doctorId.hashCode() * 31 + Long.hashCode(epochDay)) * 31 + minute;
+        }
+    }
+
+    private final long ttlNanos;
+    private final Consumer<Hold> onExpired;
+    private final ConcurrentMap<SlotKey, Hold> bySlot = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Hold> byId = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    // bucket (deadline tick mod WHEEL_SIZE) -> holds due then or a whole turn later
+    private final List<Queue<Hold>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final long origin = System.nanoTime();
+    private long sweptTick; // last tick swept; sweeper thread only
+    private volatile ScheduledExecutorService sweeper;
+
+    public SlotHolds(long ttlSeconds, Consumer<Hold> onExpired) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, ttlSeconds));
+        this.onExpired = onExpired;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    /**
+     * Holds a slot for the time to live. Returns null if someone else
+     * already holds it. (Whether it is booked is the caller's business.)
+     */
+    public Hold hold(String doctorId, LocalDate date, LocalTime time) {
+        long now = System.nanoTime();
+        Hold hold = new Hold(nextId.incrementAndGet(), doctorId, date, time, now + ttlNanos);
+        SlotKey key = new SlotKey(doctorId, date, time);
+        Hold existing = bySlot.putIfAbsent(key, hold);
+        if (existing != null && (existing.isLive(now) || !bySlot.replace(key, existing, hold))) {
+            return null;
+        }
+        if (existing != null) {
+            byId.remove(existing.id, existing); // lapsed, not yet swept
+        }
+        byId.put(hold.id, hold);
+        schedule(hold);
+        return hold;
+    }
+
+    /** Gives a hold up. Returns false if it was already gone (swept or replaced). */
+    public boolean release(Hold hold) {
+        if (!byId.remove(hold.id, hold)) {
+            return false;
+        }
+        bySlot.remove(new SlotKey(hold.doctorId, hold.date, hold.time), hold);
+        return true;
+    }
+
+    /** True if a live hold other than own (may be null) covers the slot. */
+    public boolean isHeldByOther(String doctorId, LocalDate date, LocalTime time, Hold own) {
+        if (bySlot.isEmpty()) {
+            return false;
+        }
+        Hold h = bySlot.get(new SlotKey(doctorId, date, time));
+        return h != null && h != own && h.isLive(System.nanoTime());
+    }
+
+    /** True if own is still held. */
+    public boolean isLive(Hold own) {
+        return byId.get(own.id) == own && own.isLive(System.nanoTime());
+    }
+
+    public boolean isEmpty() {
+        return bySlot.isEmpty();
+    }
+
+    public int size() {
+        return bySlot.size();
+    }
+
+    /** Stops the sweeper; holds are no longer expired. */
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    // ---------- Timer wheel ----------
+
+    private long tickOf(long nanos) {
+        return (nanos - origin) / TICK_NANOS;
+    }
+
+    private void schedule(Hold hold) {
+        // the bucket of the tick after the deadline, so the sweep sees it lapsed
+        wheel.get((int) ((tickOf(hold.deadline) + 1) & (WHEEL_SIZE - 1))).add(hold);
+        if (sweeper == null) {
+            startSweeper();
+        }
+    }
+
+    // Started on the first hold, so managers that never hold keep no thread
+    private synchronized void startSweeper() {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "slot-holds");
+            t.setDaemon(true);
+            return t;
+        });
+        sweptTick = tickOf(System.nanoTime());
+        sweeper.scheduleAtFixedRate(this::sweep, TICK_NANOS, TICK_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    // Empties every bucket passed since the last sweep
+    private void sweep() {
+        long now = System.nanoTime();
+        long tick = tickOf(now);
+        for (long t = sweptTick + 1; t <= tick && t <= sweptTick + WHEEL_SIZE; t++) {
+            Queue<Hold> bucket = wheel.get((int) (t & (WHEEL_SIZE - 1)));
+            for (int n = bucket.size(); n > 0; n--) {
+                Hold hold = bucket.poll();
+                if (hold == null) {
+                    break;
+                }
+                if (hold.isLive(now)) {
+                    bucket.add(hold); // due a whole turn later
+                } else if (byId.remove(hold.id, hold)) {
+                    bySlot.remove(new SlotKey(hold.doctorId, hold.date, hold.time), hold);
+                    try {
+                        onExpired.accept(hold);
+                    } catch (RuntimeException e) {
+                        System.err.println("Hold expiry handler failed: " + e);
+                    }
+                }
+            }
+        }
+        sweptTick = tick;
+    }
+}
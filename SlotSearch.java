@@ -0,0 +1,115 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clinic-wide "earliest N free slots" search.
+ *
+ * Doctors are split across a fork-join pool; each one walks its own slot
+ * bitmaps day by day and stops after its first n free slots. As soon as a
+ * doctor finds n slots, the n-th one becomes a shared cutoff: nothing
+ * later can make the overall top n, so every other doctor stops scanning
+ * once it passes that point. Partial results are merged pairwise, keeping
+ * the earliest n (ties go to the doctor listed first).
+ */
+public class SlotSearch {
+
+    private final AvailabilityIndex availability;
+    private final SlotHolds holds;
+
+    /** holds (may be null): slots held there are not offered. */
+    public SlotSearch(AvailabilityIndex availability, SlotHolds holds) {
+        this.availability = availability;
+        this.holds = holds;
+    }
+
+    public List<AvailableSlot> earliest(List<String> doctorIds, LocalDate from, LocalDate to,
+                                        int n, LocalDateTime now) {
+        if (n <= 0 || doctorIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        AtomicLong cutoff = new AtomicLong(Long.MAX_VALUE);
+        return ForkJoinPool.commonPool().invoke(
+                new Task(doctorIds, 0, doctorIds.size(), from, to, n, now, cutoff));
+    }
+
+    private class Task extends RecursiveTask<List<AvailableSlot>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> doctorIds;
+        private final int lo;
+        private final int hi;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final int n;
+        private final LocalDateTime now;
+        private final AtomicLong cutoff;
+
+        Task(List<String> doctorIds, int lo, int hi, LocalDate from, LocalDate to,
+             int n, LocalDateTime now, AtomicLong cutoff) {
+            this.doctorIds = doctorIds;
+            this.lo = lo;
+            this.hi = hi;
+            this.from = from;
+            this.to = to;
+            this.n = n;
+            this.now = now;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected List<AvailableSlot> compute() {
+            if (hi - lo == 1) {
+                return searchDoctor(doctorIds.get(lo));
+            }
+            int mid = (lo + hi) >>> 1;
+            Task left = new Task(doctorIds, lo, mid, from, to, n, now, cutoff);
+            Task right = new Task(doctorIds, mid, hi, from, to, n, now, cutoff);
+            right.fork();
+            List<AvailableSlot> a = left.compute();
+            List<AvailableSlot> b = right.join();
+            return merge(a, b);
+        }
+
+        private List<AvailableSlot> searchDoctor(String doctorId) {
+            List<LocalDateTime> free = availability.firstFree(doctorId, from, to, n, now, cutoff, holds);
+            List<AvailableSlot> result = new ArrayList<>(free.size());
+            for (LocalDateTime t : free) {
+                result.add(new AvailableSlot(doctorId, t.toLocalDate(), t.toLocalTime()));
+            }
+            if (result.size() == n) {
+                AvailableSlot last = result.get(n - 1);
+                cutoff.accumulateAndGet(AvailabilityIndex.slotKey(last.getDate(), last.getTime()), Math::min);
+            }
+            return result;
+        }
+
+        private List<AvailableSlot> merge(List<AvailableSlot> a, List<AvailableSlot> b) {
+            if (b.isEmpty()) {
+                return a;
+            }
+            if (a.isEmpty()) {
+                return b;
+            }
+            List<AvailableSlot> out = new ArrayList<>(Math.min(n, a.size() + b.size()));
+            int i = 0;
+            int j = 0;
+            while (out.size() < n && (i < a.size() || j < b.size())) {
+                if (j >= b.size() || (i < a.size() && key(a.get(i)) <= key(b.get(j)))) {
+                    out.add(a.get(i++));
+                } else {
+                    out.add(b.get(j++));
+                }
+            }
+            return out;
+        }
+
+        private long key(AvailableSlot s) {
+            return AvailabilityIndex.slotKey(s.getDate(), s.getTime());
+        }
+    }
+}
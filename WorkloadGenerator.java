@@ -0,0 +1,200 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Writes a synthetic clinic (doctors.txt, patients.txt, appointments.txt)
+ * whose bookings look like a real clinic's rather than a uniform spread.
+ *
+ * Doctor popularity follows a Zipf curve: the first doctor is booked about
+ * twice as often as the second and ten times as often as the tenth.
+ * Day choice follows the seasons (a winter peak about 1.8x the summer
+ * trough) and the week (busy Mondays, quiet weekends). Times are taken
+ * from the default slot grid, and a doctor's slot is never booked twice.
+ *
+ * The same curves drive LoadTestDriver, so replayed traffic hits the
+ * same hot doctors and days.
+ *
+ * Usage: java WorkloadGenerator <dir> <appointments> [doctors] [patients] [seed]
+ *   Bookings span the last 12 months and the next 3. Without a doctor
+ *   count, enough doctors are created to keep schedules about half full.
+ */
+public class WorkloadGenerator {
+
+    private static final double ZIPF_EXPONENT = 1.0;
+    private static final double[] WEEKDAY_LOAD = {1.3, 1.1, 1.0, 1.0, 0.9, 0.4, 0.1}; // Mon..Sun
+    private static final String[] FIRST_NAMES = {"John", "Jane", "Maria", "Ahmed", "Li", "Olga", "Pedro",
+            "Sara", "Tom", "Nina", "Omar", "Eva", "Yusuf", "Mei", "Ivan", "Aisha", "Lucas", "Emma"};
+    private static final String[] LAST_NAMES = {"Doe", "Smith", "Garcia", "Khan", "Wang", "Ivanova", "Silva",
+            "Berg", "Brown", "Novak", "Ali", "Lund", "Tesfaye", "Kim", "Rossi", "Okafor", "Dubois", "Sato"};
+    private static final String[] SPECIALTIES = {"General", "Cardiology", "Pediatrics", "Dermatology",
+            "Neurology", "Orthopedics"};
+
+    private final int doctors;
+    private final int patients;
+    private final LocalDate from;
+    private final double[] doctorWeights; // cumulative
+    private final double[] dayWeights;    // cumulative, one per day from `from`
+
+    /**
+     * @param doctors  doctors D100, D101, ...; the first is the most popular
+     * @param patients patients P100, P101, ...
+     * @param from     first bookable day
+     * @param to       last bookable day (inclusive)
+     */
+    public WorkloadGenerator(int doctors, int patients, LocalDate from, LocalDate to) {
+        this.doctors = doctors;
+        this.patients = patients;
+        this.from = from;
+        this.doctorWeights = zipf(doctors, ZIPF_EXPONENT);
+        int days = (int) ChronoUnit.DAYS.between(from, to) + 1;
+        this.dayWeights = new double[days];
+        double acc = 0;
+        for (int i = 0; i < days; i++) {
+            acc += dayLoad(from.plusDays(i));
+            dayWeights[i] = acc;
+        }
+    }
+
+    // ---------- Curves ----------
+
+    /** Cumulative Zipf weights for n ranks. */
+    public static double[] zipf(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double acc = 0;
+        for (int i = 0; i < n; i++) {
+            acc += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = acc;
+        }
+        return cumulative;
+    }
+
+    /** Index picked with the probabilities of a cumulative weight table. */
+    public static int sample(double[] cumulative, Random random) {
+        double x = random.nextDouble() * cumulative[cumulative.length - 1];
+        int lo = 0;
+        int hi = cumulative.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cumulative[mid] <= x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Relative booking load of a day: seasonal peak in mid-January, times the weekday. */
+    public static double dayLoad(LocalDate date) {
+        double season = 1 + 0.3 * Math.cos(2 * Math.PI * (date.getDayOfYear() - 15) / 365.25);
+        return season * WEEKDAY_LOAD[date.getDayOfWeek().getValue() - 1];
+    }
+
+    public String doctorId(int i) {
+        return "D" + (100 + i);
+    }
+
+    public String patientId(int i) {
+        return "P" + (100 + i);
+    }
+
+    public int pickDoctor(Random random) {
+        return sample(doctorWeights, random);
+    }
+
+    public LocalDate pickDay(Random random) {
+        return from.plusDays(sample(dayWeights, random));
+    }
+
+    public int pickPatient(Random random) {
+        return random.nextInt(patients);
+    }
+
+    // ---------- Writing ----------
+
+    /**
+     * Writes the three data files into dir, replacing them. Returns the
+     * number of appointments written, which is less than asked for only if
+     * the doctors' schedules fill up.
+     */
+    public int write(Path dir, int appointments, long seed) throws IOException {
+        Random random = new Random(seed);
+        Files.createDirectories(dir);
+
+        try (BufferedWriter w = Files.newBufferedWriter(dir.resolve("doctors.txt"))) {
+            for (int i = 0; i < doctors; i++) {
+                w.write(doctorId(i) + ";" + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + ";"
+                        + SPECIALTIES[i % SPECIALTIES.length] + "\n");
+            }
+        }
+        try (BufferedWriter w = Files.newBufferedWriter(dir.resolve("patients.txt"))) {
+            for (int i = 0; i < patients; i++) {
+                w.write(patientId(i) + ";" + FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                        + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + ";555-"
+                        + (1000 + random.nextInt(9000)) + "\n");
+            }
+        }
+
+        SlotGrid grid = SlotGrid.DEFAULT;
+        if ((long) dayWeights.length * doctors * grid.size() > Integer.MAX_VALUE) {
+            System.err.println("Too many doctor-days to track; use fewer doctors or a shorter range");
+            return 0;
+        }
+        BitSet taken = new BitSet(); // (day * doctors + doctor) * slots + slot
+        int written = 0;
+        int misses = 0;
+        try (BufferedWriter w = Files.newBufferedWriter(dir.resolve("appointments.txt"))) {
+            while (written < appointments && misses < 1000) {
+                int day = sample(dayWeights, random);
+                int doctor = pickDoctor(random);
+                int base = (day * doctors + doctor) * grid.size();
+                int slot = taken.nextClearBit(base + random.nextInt(grid.size())) - base;
+                if (slot >= grid.size()) {
+                    slot = taken.nextClearBit(base) - base; // wrap to the day's earlier slots
+                }
+                if (slot >= grid.size()) {
+                    misses++; // that doctor's day is full; pick again
+                    continue;
+                }
+                misses = 0;
+                taken.set(base + slot);
+                written++;
+                w.write(written + ";" + patientId(pickPatient(random)) + ";" + doctorId(doctor) + ";"
+                        + from.plusDays(day) + ";" + grid.time(slot) + "\n");
+            }
+        }
+        return written;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java WorkloadGenerator <dir> <appointments> [doctors] [patients] [seed]");
+            System.exit(2);
+        }
+        Path dir = Paths.get(args[0]);
+        int appointments = Integer.parseInt(args[1]);
+        LocalDate from = LocalDate.now().minusMonths(12);
+        LocalDate to = LocalDate.now().plusMonths(3);
+        int days = (int) ChronoUnit.DAYS.between(from, to) + 1;
+        int defaultDoctors = Math.max(3, (int) Math.ceil(2.0 * appointments / (days * SlotGrid.DEFAULT.size())));
+        int doctors = args.length > 2 ? Integer.parseInt(args[2]) : defaultDoctors;
+        int patients = args.length > 3 ? Integer.parseInt(args[3]) : Math.max(100, appointments / 20);
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+
+        long start = System.nanoTime();
+        WorkloadGenerator generator = new WorkloadGenerator(doctors, patients, from, to);
+        int written = generator.write(dir, appointments, seed);
+        System.out.printf("Wrote %d appointments for %d doctors and %d patients (%s to %s) to %s in %.1f s%n",
+                written, doctors, patients, from, to, dir, (System.nanoTime() - start) / 1e9);
+        if (written < appointments) {
+            System.out.println("Schedules filled up before " + appointments + "; add doctors for more");
+        }
+    }
+}
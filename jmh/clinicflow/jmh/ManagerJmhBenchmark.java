@@ -0,0 +1,115 @@
+package clinicflow.jmh;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH version of ManagerBenchmark: the AppointmentManager hot paths over
+ * datasets of 1k to 10M appointments, with the gc profiler for bytes/op.
+ *
+ * JMH will not take a benchmark from the unnamed package the rest of the
+ * code lives in, and a named package cannot refer to it, so the dataset
+ * and the operations come from ManagerBenchmark.open, looked up once by
+ * reflection; each call is then a plain IntFunction.apply.
+ *
+ * Usage: mvn -Pjmh package && java -jar target/benchmarks.jar [JMH options]
+ *   e.g. java -jar target/benchmarks.jar -p size=1000,10000 getPatient
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g") // 10M appointments need a large heap
+public class ManagerJmhBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private AutoCloseable fixture;
+    private IntFunction<?> getPatient;
+    private IntFunction<?> getAvailableTimeSlots;
+    private IntFunction<?> getAppointmentsFor;
+    private IntFunction<?> getAppointmentsForDoctor;
+    private IntFunction<?> bookAndCancel;
+    private IntFunction<?> load;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Map<String, IntFunction<?>> operations = new HashMap<>();
+        fixture = (AutoCloseable) Class.forName("ManagerBenchmark")
+                .getMethod("open", int.class, Map.class)
+                .invoke(null, size, operations);
+        getPatient = operations.get("getPatient");
+        getAvailableTimeSlots = operations.get("getAvailableTimeSlots");
+        getAppointmentsFor = operations.get("getAppointmentsFor");
+        getAppointmentsForDoctor = operations.get("getAppointmentsForDoctor");
+        bookAndCancel = operations.get("bookAndCancel");
+        load = operations.get("load");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    // a different doctor, day or patient each call; never negative
+    private int next() {
+        return next++ & Integer.MAX_VALUE;
+    }
+
+    @Benchmark
+    public Object getPatient() {
+        return getPatient.apply(next());
+    }
+
+    @Benchmark
+    public Object getAvailableTimeSlots() {
+        return getAvailableTimeSlots.apply(next());
+    }
+
+    @Benchmark
+    public Object getAppointmentsFor() {
+        return getAppointmentsFor.apply(next());
+    }
+
+    @Benchmark
+    public Object getAppointmentsForDoctor() {
+        return getAppointmentsForDoctor.apply(next());
+    }
+
+    @Benchmark
+    public Object bookAndCancel() {
+        return bookAndCancel.apply(next());
+    }
+
+    // startup: load the snapshot and journal into a fresh manager
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public Object load() {
+        return load.apply(next());
+    }
+
+    /** Runs the benchmarks with the gc profiler; takes the usual JMH options. */
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(ManagerJmhBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}